@@ -7,13 +7,19 @@ import java.util.List;
 import net.citizensnpcs.Settings.SettingsType;
 import net.citizensnpcs.properties.Node;
 import net.citizensnpcs.properties.Properties;
+import net.citizensnpcs.properties.Property;
 import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.properties.PropertySchema;
+import net.citizensnpcs.properties.codec.ScalarCodec;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 
 import com.google.common.collect.Lists;
 
 public class BlacksmithProperties extends PropertyManager implements Properties {
-	private static final String isBlacksmith = ".blacksmith.toggle";
+	private static final PropertySchema schema = new PropertySchema(
+			"blacksmith");
+	private static final Property<Boolean> isBlacksmith = schema.add("toggle",
+			ScalarCodec.BOOLEAN, false);
 
 	public static final BlacksmithProperties INSTANCE = new BlacksmithProperties();
 
@@ -42,12 +48,12 @@ public class BlacksmithProperties extends PropertyManager implements Properties
 
 	@Override
 	public void setEnabled(HumanNPC npc, boolean value) {
-		profiles.setBoolean(npc.getUID() + isBlacksmith, value);
+		isBlacksmith.set(npc.getUID(), value);
 	}
 
 	@Override
 	public boolean isEnabled(HumanNPC npc) {
-		return profiles.getBoolean(npc.getUID() + isBlacksmith);
+		return isBlacksmith.get(npc.getUID());
 	}
 
 	@Override
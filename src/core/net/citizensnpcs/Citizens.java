@@ -3,8 +3,6 @@ package net.citizensnpcs;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -15,11 +13,11 @@ import java.util.TreeMap;
 import net.citizensnpcs.api.event.CitizensDisableEvent;
 import net.citizensnpcs.api.event.CitizensEnableEvent;
 import net.citizensnpcs.api.event.CitizensEnableTypeEvent;
-import net.citizensnpcs.api.event.NPCCreateEvent.NPCCreateReason;
 import net.citizensnpcs.api.event.NPCRemoveEvent.NPCRemoveReason;
 import net.citizensnpcs.commands.BasicCommands;
 import net.citizensnpcs.commands.ToggleCommands;
 import net.citizensnpcs.commands.WaypointCommands;
+import net.citizensnpcs.listeners.BlockListen;
 import net.citizensnpcs.listeners.EntityListen;
 import net.citizensnpcs.listeners.PlayerListen;
 import net.citizensnpcs.listeners.WorldListen;
@@ -28,9 +26,14 @@ import net.citizensnpcs.npctypes.CitizensNPCLoader;
 import net.citizensnpcs.npctypes.CitizensNPCType;
 import net.citizensnpcs.npctypes.NPCTypeManager;
 import net.citizensnpcs.permissions.PermissionManager;
+import net.citizensnpcs.properties.BackupManager;
 import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.properties.SaveScheduler;
+import net.citizensnpcs.properties.StorageBackupSource;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 import net.citizensnpcs.resources.npclib.NPCManager;
+import net.citizensnpcs.resources.npclib.NPCSpawnDescriptor;
+import net.citizensnpcs.resources.npclib.NPCSpawnQueue;
 import net.citizensnpcs.resources.npclib.creatures.CreatureNPCType;
 import net.citizensnpcs.resources.npclib.creatures.CreatureTask;
 import net.citizensnpcs.resources.sk89q.CitizensCommandsManager;
@@ -49,7 +52,6 @@ import net.citizensnpcs.utils.StringUtils;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.Location;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -102,6 +104,9 @@ public class Citizens extends JavaPlugin {
             }
         }.start();
 
+        // core files are backed up first, so that types can claim entries
+        BackupManager.register(new StorageBackupSource());
+
         // register events per type
         for (String loaded : loadedTypes) {
             NPCTypeManager.getType(loaded).registerEvents();
@@ -111,6 +116,7 @@ public class Citizens extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new EntityListen(), this);
         getServer().getPluginManager().registerEvents(new WorldListen(), this);
         getServer().getPluginManager().registerEvents(new PlayerListen(), this);
+        getServer().getPluginManager().registerEvents(new BlockListen(), this);
 
         // register our commands
         commands.register(BasicCommands.class);
@@ -128,6 +134,8 @@ public class Citizens extends JavaPlugin {
             getServer().getScheduler().scheduleSyncRepeatingTask(this, new CreatureTask.CreatureTick(), 0, 1);
         }
         getServer().getScheduler().scheduleSyncRepeatingTask(this, new TickTask(), 0, 1);
+        SaveScheduler.start(this);
+        BackupManager.start(this);
 
         if (Settings.getBoolean("UseSaveTask")) {
             getServer().getScheduler().scheduleSyncRepeatingTask(this, new Runnable() {
@@ -147,9 +155,6 @@ public class Citizens extends JavaPlugin {
             @Override
             public void run() {
                 setupNPCs();
-                // call enable event, can be used for initialization of
-                // type-specific things
-                Bukkit.getServer().getPluginManager().callEvent(new CitizensEnableEvent());
             }
         }) == -1) {
             Messaging.log("Issue with multiworld scheduling, disabling plugin.");
@@ -167,6 +172,9 @@ public class Citizens extends JavaPlugin {
 
         // call disable event
         Bukkit.getServer().getPluginManager().callEvent(new CitizensDisableEvent());
+        // write anything still waiting to be saved
+        BackupManager.stop();
+        SaveScheduler.flush();
 
         Messaging.log("version [" + getDescription().getVersion() + "] disabled.");
     }
@@ -265,27 +273,21 @@ public class Citizens extends JavaPlugin {
 
     private void setupNPCs() {
         PropertyManager.getNPCProfiles().load();
-        List<Integer> sorted = PropertyManager.getNPCProfiles().getIntegerKeys(null);
-        Collections.sort(sorted);
-        int max = sorted.size() == 0 ? 0 : sorted.get(sorted.size() - 1), count = 0;
-        while (count <= max) {
-            if (!PropertyManager.getNPCProfiles().keyExists("" + count)) {
-                ++count;
-                continue;
-            }
-            int UID = count;
-            Location loc = PropertyManager.getBasic().getLocation(UID);
-            if (loc != null && loc.getWorld() != null) {
-                NPCManager.register(UID, PropertyManager.getBasic().getOwner(UID), NPCCreateReason.SPAWN);
-                Deque<String> text = PropertyManager.getBasic().getText(UID);
-                if (text != null) {
-                    NPCDataManager.setText(UID, text);
-                }
+        NPCManager.getIndex().clear();
+        final boolean lazy = Settings.getBoolean("LazyChunkLoading");
+        List<NPCSpawnDescriptor> descriptors = NPCSpawnQueue.parse(PropertyManager.getNPCProfiles().getIntegerKeys(
+                null));
+        new NPCSpawnQueue(descriptors, Settings.getInt("SpawnBatchSize"), lazy, new Runnable() {
+            @Override
+            public void run() {
+                Messaging.log("Loaded " + NPCManager.GlobalUIDs.size() + " NPCs"
+                        + (lazy ? ", " + NPCManager.getIndex().size() + " waiting for their chunks to load." : "."));
+                initialized = true;
+                // call enable event, can be used for initialization of
+                // type-specific things
+                Bukkit.getServer().getPluginManager().callEvent(new CitizensEnableEvent());
             }
-            ++count;
-        }
-        Messaging.log("Loaded " + NPCManager.GlobalUIDs.size() + " NPCs.");
-        initialized = true;
+        }).start(this);
     }
 
     // load NPC types in the plugins/Citizens/types directory
@@ -2,8 +2,11 @@ package net.citizensnpcs;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
 
 import net.citizensnpcs.npctypes.NPCTypeManager;
 import net.citizensnpcs.properties.Node;
@@ -30,6 +33,10 @@ public class Settings {
         return loadedNodes.get(key).getPath();
     }
 
+    public static boolean isLoaded(String name) {
+        return loadedNodes.containsKey(name);
+    }
+
     public static boolean getBoolean(String name) {
         try {
             return (Boolean) loadedNodes.get(name).getValue();
@@ -79,39 +86,82 @@ public class Settings {
 
     /*
      * Sets up miscellaneous variables, mostly reading from property files.
+     * Defaults are applied in memory and each file is written at most once.
      */
     public static void setupVariables() {
         PropertyManager.registerProperties();
-        Storage local = null;
+        List<Node> all = new ArrayList<Node>(nodes);
         // Only load settings for loaded NPC types
         for (String t : Citizens.loadedTypes) {
-            nodes.add(new Node("", SettingsType.GENERAL, "economy.prices." + t + ".creation", 100));
+            all.add(new Node("", SettingsType.GENERAL, "economy.prices." + t + ".creation", 100));
             if (NPCTypeManager.getType(t).getProperties().getNodes() == null) {
                 continue;
             }
-            for (Node node : NPCTypeManager.getType(t).getProperties().getNodes()) {
-                nodes.add(node);
-            }
+            all.addAll(NPCTypeManager.getType(t).getProperties().getNodes());
         }
-        for (Node node : nodes) {
-            local = node.getFile();
+        Set<Storage> changed = new HashSet<Storage>();
+        for (Node node : all) {
+            Storage local = node.getFile();
             if (!local.keyExists(node.getPath())) {
                 Messaging.log("Writing default setting " + node.getPath() + ".");
+                node.set(node.getDefault());
                 local.setRaw(node.getPath(), node.getValue());
+                changed.add(local);
             } else {
-                node.set(local.getRaw(node.getPath()));
+                Object value = coerce(node.getDefault(), local.getRaw(node.getPath()));
+                if (value == null) {
+                    Messaging.log("Invalid value for setting " + node.getPath() + ", using the default.",
+                            Level.WARNING);
+                    value = node.getDefault();
+                }
+                node.set(value);
             }
             loadedNodes.put(node.getName(), node);
+        }
+        for (Storage local : changed) {
             local.save();
         }
     }
 
+    // Converts a stored value to the type of the default, or null if it can't
+    // be.
+    private static Object coerce(Object def, Object value) {
+        if (value == null)
+            return null;
+        if (def == null || def instanceof String)
+            return value.toString();
+        if (def instanceof Boolean) {
+            if (value instanceof Boolean)
+                return value;
+            String string = value.toString();
+            if (string.equalsIgnoreCase("true") || string.equalsIgnoreCase("false"))
+                return Boolean.valueOf(string);
+            return null;
+        }
+        Number number;
+        try {
+            number = value instanceof Number ? (Number) value : Double.valueOf(value.toString().trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        if (def instanceof Integer)
+            return number.intValue();
+        if (def instanceof Long)
+            return number.longValue();
+        if (def instanceof Float)
+            return number.floatValue();
+        if (def instanceof Double)
+            return number.doubleValue();
+        return value;
+    }
+
     static {
         // citizens.yml
         nodes.add(new Node("MinArrowRange", SettingsType.GENERAL, "range.arrow.min", 3));
         nodes.add(new Node("MaxArrowRange", SettingsType.GENERAL, "range.arrow.max", 13));
         nodes.add(new Node("MaxStationaryTicks", SettingsType.GENERAL, "ticks.pathing.max-stationary", -1));
         nodes.add(new Node("MaxPathingTicks", SettingsType.GENERAL, "ticks.pathing.max-pathing", -1));
+        nodes.add(new Node("SightCacheTicks", SettingsType.GENERAL, "ticks.pathing.sight-cache", 5));
         nodes.add(new Node("SavingDelay", SettingsType.GENERAL, "ticks.saving.delay", 72000));
         nodes.add(new Node("RightClickPause", SettingsType.GENERAL, "ticks.waypoints.right-click-pause", 70));
         nodes.add(new Node("SavingDelay", SettingsType.GENERAL, "ticks.saving.delay", 72000));
@@ -130,6 +180,8 @@ public class Settings {
         nodes.add(new Node("SpaceChar", SettingsType.GENERAL, "general.chat.space-char", "/"));
         nodes.add(new Node("DefaultLookAt", SettingsType.GENERAL, "general.defaults.enable-following", true));
         nodes.add(new Node("SaveOften", SettingsType.GENERAL, "ticks.saving.save-often", true));
+        nodes.add(new Node("SaveQuietPeriod", SettingsType.GENERAL, "ticks.saving.quiet-period", 20));
+        nodes.add(new Node("SaveMaxDelay", SettingsType.GENERAL, "ticks.saving.max-delay", 200));
         nodes.add(new Node("UseNPCColors", SettingsType.GENERAL, "general.colors.use-npc-colours", true));
         nodes.add(new Node("UseSaveTask", SettingsType.GENERAL, "ticks.saving.use-task", true));
         nodes.add(new Node("QuickSelect", SettingsType.GENERAL, "general.quick-select", false));
@@ -141,6 +193,19 @@ public class Settings {
         nodes.add(new Node("PathfindingRange", SettingsType.GENERAL, "range.pathfinding", 16F));
         nodes.add(new Node("UseEconomy", SettingsType.GENERAL, "economy.use-economy", true));
         nodes.add(new Node("", SettingsType.GENERAL, "economy.prices.basic.creation", 100));
+        nodes.add(new Node("SpawnBatchSize", SettingsType.GENERAL, "ticks.spawning.npcs-per-tick", 20));
+        nodes.add(new Node("LazyChunkLoading", SettingsType.GENERAL, "general.chunks.lazy-load", true));
+        nodes.add(new Node("StorageType", SettingsType.GENERAL, "storage.type", "yaml"));
+        nodes.add(new Node("StorageShardSize", SettingsType.GENERAL, "storage.shard-size", 64));
+        nodes.add(new Node("DatabaseType", SettingsType.GENERAL, "storage.database.type", "sqlite"));
+        nodes.add(new Node("DatabaseURL", SettingsType.GENERAL, "storage.database.url",
+                "jdbc:sqlite:plugins/Citizens/npcs.db"));
+        nodes.add(new Node("DatabaseUsername", SettingsType.GENERAL, "storage.database.username", ""));
+        nodes.add(new Node("DatabasePassword", SettingsType.GENERAL, "storage.database.password", ""));
+        nodes.add(new Node("DatabasePoolSize", SettingsType.GENERAL, "storage.database.pool-size", 3));
+        nodes.add(new Node("BackupInterval", SettingsType.GENERAL, "storage.backups.interval", 72000));
+        nodes.add(new Node("BackupCount", SettingsType.GENERAL, "storage.backups.keep", 5));
+        nodes.add(new Node("GroupCacheTicks", SettingsType.GENERAL, "ticks.permissions.group-cache", 1200));
         // mobs.yml
         nodes.add(new Node("CreatureNPCSpawnDelay", SettingsType.MOB, "general.spawn.delay", 200));
         nodes.add(new Node("EvilTameItem", SettingsType.MOB, "evil.items.tame-item", 354));
@@ -1,9 +1,10 @@
 package net.citizensnpcs;
 
 import net.citizensnpcs.api.event.NPCCreateEvent.NPCCreateReason;
+import net.citizensnpcs.npcdata.NPCAttributes;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 import net.citizensnpcs.resources.npclib.NPCManager;
-import net.citizensnpcs.utils.LocationUtils;
+import net.citizensnpcs.resources.npclib.SightCache;
 import net.citizensnpcs.utils.MessageUtils;
 import net.citizensnpcs.utils.Messaging;
 import net.citizensnpcs.utils.PathUtils;
@@ -12,6 +13,7 @@ import net.citizensnpcs.waypoints.WaypointPath;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import com.google.common.collect.HashMultimap;
@@ -19,27 +21,55 @@ import com.google.common.collect.SetMultimap;
 
 public class TickTask implements Runnable {
     private static final SetMultimap<HumanNPC, String> cachedActions = HashMultimap.create();
+    private HumanNPC[] ticking = new HumanNPC[0];
 
     @Override
     public void run() {
+        SightCache.nextTick();
         Player[] online = Bukkit.getServer().getOnlinePlayers();
-        for (HumanNPC npc : NPCManager.getList().values()) {
+        // read each player's position once rather than once per NPC.
+        World[] worlds = new World[online.length];
+        double[] positions = new double[online.length * 3];
+        for (int i = 0; i < online.length; ++i) {
+            Location loc = online[i].getLocation();
+            worlds[i] = loc.getWorld();
+            positions[i * 3] = loc.getX();
+            positions[i * 3 + 1] = loc.getY();
+            positions[i * 3 + 2] = loc.getZ();
+        }
+        double range = Settings.getDouble("NPCRange"), rangeSquared = range * range;
+        NPCAttributes attributes = NPCManager.getAttributes();
+        // walk a copy, as ticking an NPC can remove others and so move slots.
+        // NPCs added during the pass are ticked from the next one.
+        int count = attributes.size();
+        ticking = attributes.copyNPCs(ticking);
+        for (int n = 0; n < count; ++n) {
+            HumanNPC npc = ticking[n];
+            ticking[n] = null;
+            if (!isTicking(attributes, npc))
+                continue;
             updateWaypoints(npc);
             npc.doTick();
-            if (!npc.getNPCData().isLookClose() && !npc.getNPCData().isTalkClose())
+            if (!isTicking(attributes, npc))
+                continue;
+            int slot = attributes.getSlot(npc.getUID());
+            attributes.updatePosition(slot);
+            if (!attributes.hasFlag(slot, NPCAttributes.LOOK_CLOSE | NPCAttributes.TALK_CLOSE))
                 continue;
-            boolean canLookClose = npc.getHandle().pathFinished() && !npc.getHandle().hasTarget()
-                    && npc.getNPCData().isLookClose();
-            if (!npc.getNPCData().isTalkClose() && !canLookClose)
+            boolean talkClose = attributes.hasFlag(slot, NPCAttributes.TALK_CLOSE);
+            boolean canLookClose = attributes.hasFlag(slot, NPCAttributes.LOOK_CLOSE)
+                    && npc.getHandle().pathFinished() && !npc.getHandle().hasTarget();
+            if (!talkClose && !canLookClose)
                 continue;
-            Location npcLoc = npc.getLocation();
-            for (Player player : online) {
+            for (int i = 0; i < online.length; ++i) {
+                Player player = online[i];
                 // If the player is within 'seeing' range
-                if (LocationUtils.withinRange(npcLoc, player.getLocation(), Settings.getDouble("NPCRange"))) {
+                if (attributes.withinRange(slot, worlds[i], positions[i * 3], positions[i * 3 + 1],
+                        positions[i * 3 + 2], rangeSquared)) {
                     if (canLookClose) {
                         NPCManager.faceEntity(npc, player);
                     }
-                    if (npc.getNPCData().isTalkClose())
+                    if (talkClose)
                         cacheActions(npc, player);
                 } else {
                     cachedActions.remove(npc, player.getName());
@@ -48,6 +78,12 @@ public class TickTask implements Runnable {
         }
     }
 
+    // Whether the NPC still has its slot, rather than having been removed.
+    private static boolean isTicking(NPCAttributes attributes, HumanNPC npc) {
+        int slot = attributes.getSlot(npc.getUID());
+        return slot != -1 && attributes.getNPC(slot) == npc;
+    }
+
     private void updateWaypoints(HumanNPC npc) {
         WaypointPath waypoints = npc.getWaypoints();
         switch (waypoints.size()) {
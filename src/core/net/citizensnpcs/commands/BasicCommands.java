@@ -1,5 +1,6 @@
 package net.citizensnpcs.commands;
 
+import java.io.File;
 import java.util.ArrayDeque;
 
 import net.citizensnpcs.Citizens;
@@ -12,7 +13,9 @@ import net.citizensnpcs.npcdata.NPCDataManager;
 import net.citizensnpcs.npcdata.PathEditingSession;
 import net.citizensnpcs.npctypes.CitizensNPC;
 import net.citizensnpcs.permissions.PermissionManager;
+import net.citizensnpcs.properties.BackupManager;
 import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.properties.StorageTransfer;
 import net.citizensnpcs.properties.properties.UtilityProperties;
 import net.citizensnpcs.resources.npclib.CraftNPC;
 import net.citizensnpcs.resources.npclib.HumanNPC;
@@ -82,6 +85,102 @@ public class BasicCommands extends CommandHandler {
         HelpUtils.sendHelpPage(sender, page);
     }
 
+    @Command(
+             aliases = "citizens",
+             usage = "backup (list|restore [name])",
+             desc = "back up or restore Citizens data",
+             modifiers = "backup",
+             min = 1,
+             max = 3)
+    @ServerCommand()
+    @CommandPermissions("admin.backup")
+    @CommandRequirements()
+    public static void backup(CommandContext args, CommandSender sender, HumanNPC npc) {
+        if (args.argsLength() == 1) {
+            if (BackupManager.backup(sender)) {
+                sender.sendMessage(ChatColor.GRAY + "Backing up...");
+            } else
+                Messaging.sendError(sender, "A backup is already in progress.");
+            return;
+        }
+        if (args.getString(1).equalsIgnoreCase("list")) {
+            sender.sendMessage(ChatColor.GREEN + StringUtils.listify(StringUtils.wrap("Backups")));
+            BackupManager.list(sender);
+        } else if (args.getString(1).equalsIgnoreCase("restore") && args.argsLength() == 3) {
+            if (BackupManager.restore(sender, args.getString(2))) {
+                sender.sendMessage(ChatColor.GRAY + "Restoring " + StringUtils.wrap(args.getString(2), ChatColor.GRAY)
+                        + "...");
+            } else
+                Messaging.sendError(sender, "Invalid backup name, or a backup is already in progress.");
+        } else
+            Messaging.sendError(sender, "Usage: /citizens backup (list|restore [name])");
+    }
+
+    @Command(
+             aliases = "citizens",
+             usage = "export [file]",
+             desc = "export every NPC to a file",
+             modifiers = "export",
+             min = 2,
+             max = 2)
+    @ServerCommand()
+    @CommandPermissions("admin.transfer")
+    @CommandRequirements()
+    public static void export(CommandContext args, CommandSender sender, HumanNPC npc) {
+        File file = StorageTransfer.getFile(args.getString(1));
+        if (file == null) {
+            Messaging.sendError(sender, "Invalid file name.");
+        } else if (StorageTransfer.export(sender, file)) {
+            sender.sendMessage(ChatColor.GRAY + "Exporting NPCs to " + StringUtils.wrap(file.getPath(), ChatColor.GRAY)
+                    + "...");
+        } else
+            Messaging.sendError(sender, "Another export, import or migration is in progress.");
+    }
+
+    @Command(
+             aliases = "citizens",
+             usage = "import [file]",
+             desc = "import NPCs from a file",
+             modifiers = "import",
+             min = 2,
+             max = 2)
+    @ServerCommand()
+    @CommandPermissions("admin.transfer")
+    @CommandRequirements()
+    public static void importNPCs(CommandContext args, CommandSender sender, HumanNPC npc) {
+        File file = StorageTransfer.getFile(args.getString(1));
+        if (file == null) {
+            Messaging.sendError(sender, "Invalid file name.");
+        } else if (StorageTransfer.importFrom(sender, file)) {
+            sender.sendMessage(ChatColor.GRAY + "Importing NPCs from "
+                    + StringUtils.wrap(file.getPath(), ChatColor.GRAY) + "...");
+        } else
+            Messaging.sendError(sender, "Another export, import or migration is in progress.");
+    }
+
+    @Command(
+             aliases = "citizens",
+             usage = "migrate [yaml|sharded|database]",
+             desc = "move NPC storage to another backend",
+             modifiers = "migrate",
+             min = 2,
+             max = 2)
+    @ServerCommand()
+    @CommandPermissions("admin.transfer")
+    @CommandRequirements()
+    public static void migrate(CommandContext args, CommandSender sender, HumanNPC npc) {
+        String type = args.getString(1).toLowerCase();
+        if (!type.equals("yaml") && !type.equals("sharded") && !type.equals("database")) {
+            Messaging.sendError(sender, "Unknown storage type. Valid types are yaml, sharded and database.");
+        } else if (type.equalsIgnoreCase(UtilityProperties.getConfig().getString("storage.type", "yaml"))) {
+            Messaging.sendError(sender, "NPCs are already stored using " + type + ".");
+        } else if (StorageTransfer.migrate(sender, type)) {
+            sender.sendMessage(ChatColor.GRAY + "Migrating NPCs to " + StringUtils.wrap(type, ChatColor.GRAY)
+                    + " storage. Changes made to NPCs until it finishes will not be migrated.");
+        } else
+            Messaging.sendError(sender, "Another export, import or migration is in progress.");
+    }
+
     @Command(aliases = "citizens", desc = "view Citizens info", modifiers = "clean", max = 1)
     @ServerCommand()
     @CommandPermissions("admin.clean")
@@ -460,6 +559,7 @@ public class BasicCommands extends CommandHandler {
 
         PropertyManager.loadAll();
         Settings.setupVariables();
+        PermissionManager.clearGroupCache();
 
         Bukkit.getServer().getPluginManager().callEvent(new CitizensReloadEvent());
 
@@ -474,7 +574,7 @@ public class BasicCommands extends CommandHandler {
     public static void remove(CommandContext args, Player player, HumanNPC npc) {
         if (args.argsLength() == 2 && args.getString(1).equalsIgnoreCase("all")) {
             if (PermissionManager.hasPermission(player, "citizens.basic.modify.remove.all")) {
-                if (NPCManager.GlobalUIDs.size() == 0) {
+                if (NPCManager.count() == 0) {
                     Messaging.sendError(player, "There are no NPCs to remove.");
                     return;
                 }
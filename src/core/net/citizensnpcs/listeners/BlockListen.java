@@ -0,0 +1,55 @@
+package net.citizensnpcs.listeners;
+
+import net.citizensnpcs.resources.npclib.SightCache;
+
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+
+public class BlockListen implements Listener {
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        if (!event.isCancelled())
+            SightCache.blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBlockBreak(BlockBreakEvent event) {
+        if (!event.isCancelled())
+            SightCache.blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBlockBurn(BlockBurnEvent event) {
+        if (!event.isCancelled())
+            SightCache.blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBlockFade(BlockFadeEvent event) {
+        if (!event.isCancelled())
+            SightCache.blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBlockForm(BlockFormEvent event) {
+        if (!event.isCancelled())
+            SightCache.blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        if (event.isCancelled())
+            return;
+        for (Block block : event.blockList()) {
+            SightCache.blockChanged(block);
+        }
+    }
+}
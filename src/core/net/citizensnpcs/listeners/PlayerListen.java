@@ -3,6 +3,7 @@ package net.citizensnpcs.listeners;
 import net.citizensnpcs.TickTask;
 import net.citizensnpcs.api.event.NPCTargetEvent;
 import net.citizensnpcs.npcdata.NPCDataManager;
+import net.citizensnpcs.permissions.PermissionManager;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 import net.citizensnpcs.resources.npclib.NPCManager;
 import net.citizensnpcs.resources.npclib.creatures.CreatureTask;
@@ -14,6 +15,7 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.entity.EntityTargetEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerChatEvent;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
@@ -32,6 +34,13 @@ public class PlayerListen implements Listener {
         TickTask.clearActions(event.getPlayer());
         CreatureTask.setDirty();
         ConversationUtils.verify();
+        PermissionManager.invalidateGroups(event.getPlayer());
+    }
+
+    // Providers can have per-world groups.
+    @EventHandler
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        PermissionManager.invalidateGroups(event.getPlayer());
     }
 
     @EventHandler
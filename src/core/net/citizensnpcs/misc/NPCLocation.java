@@ -36,6 +36,23 @@ public class NPCLocation {
 		this.chunkZ = this.z >> 4;
 	}
 
+	/**
+	 * Used for indexing npcs whose world may not be loaded yet.
+	 */
+	public NPCLocation(String world, double x, double y, double z, float yaw,
+			float pitch, int UID, String owner) {
+		this.x = (int) Math.floor(x);
+		this.y = (int) Math.floor(y);
+		this.z = (int) Math.floor(z);
+		this.pitch = pitch;
+		this.yaw = yaw;
+		this.world = world;
+		this.UID = UID;
+		this.owner = owner;
+		this.chunkX = this.x >> 4;
+		this.chunkZ = this.z >> 4;
+	}
+
 	public int getZ() {
 		return this.z;
 	}
@@ -50,7 +67,11 @@ public class NPCLocation {
 
 	public Location getLocation() {
 		return new Location(Bukkit.getServer().getWorld(this.world), x, y, z,
-				pitch, yaw);
+				yaw, pitch);
+	}
+
+	public String getWorldName() {
+		return this.world;
 	}
 
 	public String getOwner() {
@@ -0,0 +1,167 @@
+package net.citizensnpcs.npcdata;
+
+import java.util.Arrays;
+
+import net.citizensnpcs.resources.npclib.CraftNPC;
+import net.citizensnpcs.resources.npclib.HumanNPC;
+
+import org.bukkit.World;
+
+/**
+ * Keeps the attributes read by the tick task for every spawned NPC in
+ * parallel arrays indexed by a dense slot, so that the per-tick pass over all
+ * NPCs doesn't have to chase each NPC's objects around the heap. The owning
+ * objects write through to their slot whenever a flag changes. When an NPC is
+ * removed the last slot is moved into the gap. Only accessed from the main
+ * thread.
+ */
+public class NPCAttributes {
+	public static final int LOOK_CLOSE = 1, TALK_CLOSE = 2;
+
+	private int size;
+	// UID to slot + 1, so that the default of 0 means no slot.
+	private int[] slots = new int[INITIAL_CAPACITY];
+	private HumanNPC[] npcs = new HumanNPC[INITIAL_CAPACITY];
+	private byte[] flags = new byte[INITIAL_CAPACITY];
+	private World[] worlds = new World[INITIAL_CAPACITY];
+	private double[] x = new double[INITIAL_CAPACITY],
+			y = new double[INITIAL_CAPACITY], z = new double[INITIAL_CAPACITY];
+
+	/**
+	 * Gives the NPC a slot, or refreshes its slot if its UID already has one.
+	 */
+	public int add(HumanNPC npc) {
+		int UID = npc.getUID();
+		if (UID < 0)
+			return -1;
+		int slot = getSlot(UID);
+		if (slot == -1) {
+			if (size == npcs.length)
+				grow(size * 2);
+			slot = size++;
+			if (UID >= slots.length)
+				slots = Arrays.copyOf(slots,
+						Math.max(UID + 1, slots.length * 2));
+			slots[UID] = slot + 1;
+		}
+		npcs[slot] = npc;
+		update(npc);
+		updatePosition(slot);
+		return slot;
+	}
+
+	public void remove(int UID) {
+		int slot = getSlot(UID);
+		if (slot == -1)
+			return;
+		slots[UID] = 0;
+		int last = --size;
+		if (slot != last) {
+			npcs[slot] = npcs[last];
+			flags[slot] = flags[last];
+			worlds[slot] = worlds[last];
+			x[slot] = x[last];
+			y[slot] = y[last];
+			z[slot] = z[last];
+			slots[npcs[slot].getUID()] = slot + 1;
+		}
+		npcs[last] = null;
+		worlds[last] = null;
+	}
+
+	// Copies the flags held by the NPC's data into its slot.
+	public void update(HumanNPC npc) {
+		int slot = getSlot(npc.getUID());
+		if (slot == -1 || npcs[slot] != npc)
+			return;
+		NPCData data = npc.getNPCData();
+		int value = 0;
+		if (data.isLookClose())
+			value |= LOOK_CLOSE;
+		if (data.isTalkClose())
+			value |= TALK_CLOSE;
+		flags[slot] = (byte) value;
+	}
+
+	// Reads the current position of the NPC's entity into its slot.
+	public void updatePosition(int slot) {
+		CraftNPC handle = npcs[slot].getHandle();
+		worlds[slot] = handle.world.getWorld();
+		x[slot] = handle.locX;
+		y[slot] = handle.locY;
+		z[slot] = handle.locZ;
+	}
+
+	public int getSlot(int UID) {
+		return UID >= 0 && UID < slots.length ? slots[UID] - 1 : -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public HumanNPC getNPC(int slot) {
+		return npcs[slot];
+	}
+
+	/**
+	 * Copies the NPCs in slot order into the given array, or a new one if it
+	 * is too small, so that they can be walked while slots change.
+	 */
+	public HumanNPC[] copyNPCs(HumanNPC[] into) {
+		if (into.length < size)
+			into = new HumanNPC[npcs.length];
+		System.arraycopy(npcs, 0, into, 0, size);
+		return into;
+	}
+
+	public boolean hasFlag(int slot, int flag) {
+		return (flags[slot] & flag) != 0;
+	}
+
+	public void setFlag(int UID, int flag, boolean value) {
+		int slot = getSlot(UID);
+		if (slot == -1)
+			return;
+		flags[slot] = (byte) (value ? flags[slot] | flag : flags[slot] & ~flag);
+	}
+
+	public World getWorld(int slot) {
+		return worlds[slot];
+	}
+
+	public double getX(int slot) {
+		return x[slot];
+	}
+
+	public double getY(int slot) {
+		return y[slot];
+	}
+
+	public double getZ(int slot) {
+		return z[slot];
+	}
+
+	/**
+	 * Checks whether the NPC's last read position is within the given squared
+	 * distance of a point.
+	 */
+	public boolean withinRange(int slot, World world, double px, double py,
+			double pz, double rangeSquared) {
+		if (worlds[slot] != world)
+			return false;
+		double dx = x[slot] - px, dy = y[slot] - py, dz = z[slot] - pz;
+		return rangeSquared > dx * dx + dy * dy + dz * dz;
+	}
+
+	private void grow(int capacity) {
+		npcs = Arrays.copyOf(npcs, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		worlds = Arrays.copyOf(worlds, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		z = Arrays.copyOf(z, capacity);
+	}
+
+	private static final int INITIAL_CAPACITY = 64;
+}
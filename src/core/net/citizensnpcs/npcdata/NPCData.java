@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
 
+import net.citizensnpcs.resources.npclib.NPCManager;
+
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 
@@ -88,6 +90,8 @@ public class NPCData {
 
 	public void setLookClose(boolean lookClose) {
 		this.lookClose = lookClose;
+		NPCManager.getAttributes().setFlag(UID, NPCAttributes.LOOK_CLOSE,
+				lookClose);
 	}
 
 	public boolean isLookClose() {
@@ -96,6 +100,8 @@ public class NPCData {
 
 	public void setTalkClose(boolean talkClose) {
 		this.talkClose = talkClose;
+		NPCManager.getAttributes().setFlag(UID, NPCAttributes.TALK_CLOSE,
+				talkClose);
 	}
 
 	public boolean isTalkClose() {
@@ -73,4 +73,22 @@ public abstract class CitizensNPC {
 	 */
 	public void onDeath(EntityDeathEvent event) {
 	}
+
+	/**
+	 * Called when this type is added to an NPC.
+	 * 
+	 * @param npc
+	 *            NPC the type was added to
+	 */
+	public void onAdd(HumanNPC npc) {
+	}
+
+	/**
+	 * Called when this type is removed from an NPC, or the NPC is despawned.
+	 * 
+	 * @param npc
+	 *            NPC the type was removed from
+	 */
+	public void onRemove(HumanNPC npc) {
+	}
 }
\ No newline at end of file
@@ -2,9 +2,11 @@ package net.citizensnpcs.permissions;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.citizensnpcs.Citizens;
+import net.citizensnpcs.Settings;
 import net.citizensnpcs.commands.BasicCommands;
 import net.citizensnpcs.commands.ToggleCommands;
 import net.citizensnpcs.commands.WaypointCommands;
@@ -17,12 +19,16 @@ import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.RegisteredServiceProvider;
 
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 
 public class PermissionManager {
     private static Permission provider = null;
     private static boolean permissionsEnabled;
     private static final List<String> permissions = new ArrayList<String>();
+    // Player name to the groups last fetched from the provider. Only accessed
+    // from the main thread.
+    private static final Map<String, CachedGroups> groupCache = Maps.newHashMap();
 
     public void init() {
         try {
@@ -61,6 +67,7 @@ public class PermissionManager {
 
     public static void grantRank(Player player, String rank, boolean take) {
         if (permissionsEnabled) {
+            invalidateGroups(player);
             if (take) {
                 provider.playerRemoveGroup(player, rank);
             } else {
@@ -71,6 +78,7 @@ public class PermissionManager {
 
     public static void setRank(Player player, String rank) {
         if (permissionsEnabled) {
+            invalidateGroups(player);
             for (String group : provider.getPlayerGroups(player)) {
                 provider.playerRemoveGroup(player, group);
             }
@@ -80,6 +88,7 @@ public class PermissionManager {
 
     public static void removeRank(Player player, String rank) {
         if (permissionsEnabled) {
+            invalidateGroups(player);
             provider.playerRemoveGroup(player, rank);
         }
     }
@@ -98,14 +107,44 @@ public class PermissionManager {
         }
     }
 
+    /**
+     * Gets the player's groups. Groups are fetched from the provider at most
+     * once per cache period, so the returned set can't be modified.
+     */
     public static Set<CitizensGroup> getGroups(Player player) {
+        CachedGroups cached = getCachedGroups(player);
+        return cached == null ? null : cached.groups;
+    }
+
+    /**
+     * Gets the lower case names of the player's groups, from the same cache as
+     * {@link #getGroups(Player)}. The returned array mustn't be modified.
+     */
+    public static String[] getGroupNames(Player player) {
+        CachedGroups cached = getCachedGroups(player);
+        return cached == null ? null : cached.names;
+    }
+
+    private static CachedGroups getCachedGroups(Player player) {
         if (!permissionsEnabled)
             return null;
-        Set<CitizensGroup> groups = Sets.newHashSet();
-        for (String group : provider.getPlayerGroups(player)) {
-            groups.add(new CitizensGroup(group));
+        long now = System.currentTimeMillis();
+        CachedGroups cached = groupCache.get(player.getName());
+        if (cached == null || cached.expires <= now) {
+            cached = new CachedGroups(provider.getPlayerGroups(player), now
+                    + Settings.getInt("GroupCacheTicks") * 50L);
+            groupCache.put(player.getName(), cached);
         }
-        return groups;
+        return cached;
+    }
+
+    // Makes the next group lookup for the player go to the provider.
+    public static void invalidateGroups(Player player) {
+        groupCache.remove(player.getName());
+    }
+
+    public static void clearGroupCache() {
+        groupCache.clear();
     }
 
     // TODO: is this needed?
@@ -139,4 +178,23 @@ public class PermissionManager {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    private static class CachedGroups {
+        private final Set<CitizensGroup> groups;
+        private final String[] names;
+        private final long expires;
+
+        CachedGroups(String[] fetched, long expires) {
+            if (fetched == null)
+                fetched = new String[0];
+            ImmutableSet.Builder<CitizensGroup> builder = ImmutableSet.builder();
+            names = new String[fetched.length];
+            for (int i = 0; i < fetched.length; ++i) {
+                builder.add(new CitizensGroup(fetched[i]));
+                names[i] = fetched[i].toLowerCase();
+            }
+            this.groups = builder.build();
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package net.citizensnpcs.properties;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import net.citizensnpcs.Citizens;
+import net.citizensnpcs.Settings;
+import net.citizensnpcs.api.event.CitizensReloadEvent;
+import net.citizensnpcs.utils.Messaging;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Closeables;
+
+/**
+ * Periodically writes compressed backups of every registered
+ * {@link BackupSource} to plugins/Citizens/backups, keeping only the newest
+ * few. Sources are snapshotted on the main thread and everything else,
+ * including compression, happens on a single background thread.
+ */
+public class BackupManager {
+	private static final List<BackupSource> sources = new CopyOnWriteArrayList<BackupSource>();
+	private static final AtomicBoolean running = new AtomicBoolean();
+	private static ExecutorService executor;
+	private static int taskID = -1;
+
+	/**
+	 * Registers a source. When restoring, later sources are offered each
+	 * entry before earlier ones.
+	 */
+	public static void register(BackupSource source) {
+		if (!sources.contains(source))
+			sources.add(source);
+	}
+
+	public static void start(Plugin plugin) {
+		int interval = Settings.getInt("BackupInterval");
+		if (taskID != -1 || interval <= 0)
+			return;
+		taskID = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin,
+				new Runnable() {
+					@Override
+					public void run() {
+						backup(null);
+					}
+				}, interval, interval);
+	}
+
+	// Waits for a running backup or restore to finish.
+	public static void stop() {
+		if (taskID != -1) {
+			Bukkit.getScheduler().cancelTask(taskID);
+			taskID = -1;
+		}
+		ExecutorService current;
+		synchronized (BackupManager.class) {
+			current = executor;
+			executor = null;
+		}
+		if (current == null)
+			return;
+		current.shutdown();
+		try {
+			if (!current.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS))
+				Messaging.log("Timed out waiting for a backup to finish.",
+						Level.WARNING);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Starts a backup, reporting the result to the given sender if it isn't
+	 * null.
+	 *
+	 * @return false if a backup or restore is already running
+	 */
+	public static boolean backup(final CommandSender sender) {
+		if (!running.compareAndSet(false, true))
+			return false;
+		final List<BackupSource.Task> tasks = Lists.newArrayList();
+		for (BackupSource source : sources) {
+			tasks.add(source.prepare());
+		}
+		final String name = "backup-"
+				+ new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date())
+				+ ".zip";
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					int entries = write(new File(DIRECTORY, name), tasks);
+					rotate();
+					report(sender, ChatColor.GREEN, "Backed up " + entries
+							+ " files to " + name + ".");
+				} catch (IOException ex) {
+					report(sender, ChatColor.RED, "Unable to write backup "
+							+ name + ": " + ex.getMessage());
+				} finally {
+					running.set(false);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Restores the given backup and reloads Citizens once it has been
+	 * extracted. Saves are held back from the start of the restore until the
+	 * reload has finished.
+	 *
+	 * @return false if the name is invalid or a backup or restore is already
+	 *         running
+	 */
+	public static boolean restore(final CommandSender sender, String name) {
+		if (!name.endsWith(".zip"))
+			name += ".zip";
+		if (!BACKUP_FILE.matcher(name).matches()
+				|| !running.compareAndSet(false, true))
+			return false;
+		final String backup = name;
+		SaveScheduler.pause();
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				File file = new File(DIRECTORY, backup);
+				if (!file.exists()) {
+					report(sender, ChatColor.RED, "No backup named " + backup
+							+ " exists.");
+					finishRestore(sender, false, null);
+					return;
+				}
+				try {
+					int restored = extract(file);
+					finishRestore(sender, true, "Restored " + restored
+							+ " files from " + backup + ".");
+				} catch (IOException ex) {
+					report(sender, ChatColor.RED, "Unable to restore " + backup
+							+ ": " + ex.getMessage());
+					// some files may already have been replaced.
+					finishRestore(sender, true, null);
+				}
+			}
+		});
+		return true;
+	}
+
+	// Reloads on the main thread if files were replaced, then lets saves
+	// through again.
+	private static void finishRestore(final CommandSender sender,
+			final boolean reload, final String message) {
+		Bukkit.getScheduler().scheduleSyncDelayedTask(Citizens.plugin,
+				new Runnable() {
+					@Override
+					public void run() {
+						try {
+							if (reload) {
+								// pending saves hold what the files had before.
+								SaveScheduler.discard();
+								PropertyManager.loadAll();
+								Settings.setupVariables();
+								Bukkit.getServer().getPluginManager()
+										.callEvent(new CitizensReloadEvent());
+							}
+							if (message != null)
+								report(sender, ChatColor.GREEN, message);
+						} finally {
+							SaveScheduler.resume();
+							running.set(false);
+						}
+					}
+				});
+	}
+
+	// Reports the names of the stored backups, newest last.
+	public static void list(final CommandSender sender) {
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				List<String> names = getBackups();
+				if (names.isEmpty()) {
+					report(sender, ChatColor.GRAY, "There are no backups.");
+					return;
+				}
+				for (String name : names) {
+					report(sender, ChatColor.GREEN, "    - " + name);
+				}
+			}
+		});
+	}
+
+	private static int write(File file, List<BackupSource.Task> tasks)
+			throws IOException {
+		file.getParentFile().mkdirs();
+		File temp = new File(file.getPath() + ".tmp");
+		ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(
+				new FileOutputStream(temp)));
+		Archive archive = new Archive(zip);
+		try {
+			for (BackupSource.Task task : tasks) {
+				task.write(archive);
+			}
+			zip.finish();
+		} finally {
+			Closeables.closeQuietly(zip);
+		}
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("unable to rename " + temp.getName());
+		}
+		return archive.count;
+	}
+
+	private static int extract(File file) throws IOException {
+		ZipInputStream zip = new ZipInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		int count = 0;
+		for (BackupSource source : sources) {
+			source.beginRestore();
+		}
+		try {
+			ZipEntry entry;
+			while ((entry = zip.getNextEntry()) != null) {
+				String name = entry.getName();
+				if (entry.isDirectory() || !isSafe(name))
+					continue;
+				// a new reader per entry, so that nothing is read ahead.
+				Reader reader = new InputStreamReader(zip,
+						Charset.defaultCharset());
+				boolean claimed = false;
+				for (int i = sources.size() - 1; i >= 0 && !claimed; --i) {
+					claimed = sources.get(i).restore(name, reader);
+				}
+				if (claimed) {
+					++count;
+				} else
+					Messaging.log("Skipping unknown backup entry " + name + ".");
+				zip.closeEntry();
+			}
+		} finally {
+			Closeables.closeQuietly(zip);
+		}
+		return count;
+	}
+
+	private static void rotate() {
+		List<String> names = getBackups();
+		int keep = Math.max(1, Settings.getInt("BackupCount"));
+		for (int i = 0; i < names.size() - keep; ++i) {
+			if (!new File(DIRECTORY, names.get(i)).delete())
+				Messaging.log("Unable to delete old backup " + names.get(i)
+						+ ".");
+		}
+	}
+
+	private static List<String> getBackups() {
+		List<String> names = Lists.newArrayList();
+		String[] files = new File(DIRECTORY).list();
+		if (files == null)
+			return names;
+		for (String name : files) {
+			if (BACKUP_FILE.matcher(name).matches())
+				names.add(name);
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	private static void report(final CommandSender sender,
+			final ChatColor colour, final String message) {
+		if (sender == null) {
+			Messaging.log(message);
+			return;
+		}
+		Bukkit.getScheduler().scheduleSyncDelayedTask(Citizens.plugin,
+				new Runnable() {
+					@Override
+					public void run() {
+						sender.sendMessage(colour + message);
+					}
+				});
+	}
+
+	/**
+	 * Gets the name a file is stored under in backups: its path relative to
+	 * the Citizens data folder.
+	 */
+	public static String getEntryName(File file) {
+		String base = new File(DATA_FOLDER).getAbsolutePath() + File.separator;
+		String path = file.getAbsolutePath();
+		if (!path.startsWith(base))
+			return file.getName();
+		return path.substring(base.length()).replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * Restores an entry to its file in the Citizens data folder.
+	 */
+	public static void restoreFile(String entry, final Reader reader)
+			throws IOException {
+		SaveScheduler.write(new File(DATA_FOLDER, entry),
+				new SaveScheduler.Snapshot() {
+					@Override
+					public void write(Writer writer) throws IOException {
+						CharStreams.copy(reader, writer);
+					}
+				});
+	}
+
+	private static boolean isSafe(String entry) {
+		return !entry.startsWith("/") && !entry.contains("..")
+				&& !entry.contains("\\");
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null || executor.isShutdown()) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Citizens backups");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * A backup being written. Each entry is compressed as it is streamed in.
+	 */
+	public static class Archive {
+		private final ZipOutputStream zip;
+		private final Writer writer;
+		private int count;
+
+		Archive(ZipOutputStream zip) {
+			this.zip = zip;
+			this.writer = new OutputStreamWriter(zip, Charset.defaultCharset());
+		}
+
+		public void add(String name, SaveScheduler.Snapshot snapshot)
+				throws IOException {
+			zip.putNextEntry(new ZipEntry(name));
+			snapshot.write(writer);
+			writer.flush();
+			zip.closeEntry();
+			++count;
+		}
+
+		public void add(String name, final String data) throws IOException {
+			add(name, new SaveScheduler.Snapshot() {
+				@Override
+				public void write(Writer writer) throws IOException {
+					writer.write(data);
+				}
+			});
+		}
+	}
+
+	private static final String DATA_FOLDER = "plugins/Citizens";
+	private static final String DIRECTORY = DATA_FOLDER + "/backups";
+	private static final Pattern BACKUP_FILE = Pattern
+			.compile("^backup-[0-9]{8}-[0-9]{6}\\.zip$");
+	private static final int STOP_TIMEOUT = 60;
+}
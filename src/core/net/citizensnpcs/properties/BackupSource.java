@@ -0,0 +1,33 @@
+package net.citizensnpcs.properties;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Something whose data is included in backups made by {@link BackupManager}.
+ */
+public interface BackupSource {
+	/**
+	 * Copies the data to back up. Called on the main thread; the returned task
+	 * is run on the backup thread and must only use the copied data or
+	 * thread-safe stores.
+	 */
+	public Task prepare();
+
+	/**
+	 * Restores a single entry of a backup. Called on the backup thread.
+	 *
+	 * @return whether the entry belonged to this source
+	 */
+	public boolean restore(String entry, Reader reader) throws IOException;
+
+	/**
+	 * Called on the backup thread before the entries of a backup are offered
+	 * to {@link #restore(String, Reader)}.
+	 */
+	public void beginRestore();
+
+	public interface Task {
+		public void write(BackupManager.Archive archive) throws IOException;
+	}
+}
@@ -1,30 +1,36 @@
 package net.citizensnpcs.properties;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Map;
 import java.util.logging.Level;
 
 import net.citizensnpcs.utils.Messaging;
-import net.citizensnpcs.utils.StringUtils;
-
-import org.bukkit.configuration.MemorySection;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 
 import com.google.common.collect.Lists;
-
-public class CachedYAMLHandler extends AbstractStorage {
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+
+/**
+ * Keeps a flat copy of a YAML file in memory. The file is streamed straight
+ * to and from the cache by {@link YAMLStream}.
+ */
+public class CachedYAMLHandler extends AbstractStorage implements
+		SaveScheduler.Saveable {
 	private final SettingsTree tree = new SettingsTree();
-	private final FileConfiguration config;
 	private final File file;
 
 	public CachedYAMLHandler(String fileName) {
 		this.file = new File(fileName);
-		this.config = new YamlConfiguration();
 		if (!file.exists()) {
 			create();
 			save();
@@ -35,39 +41,47 @@ public class CachedYAMLHandler extends AbstractStorage {
 
 	@Override
 	public void load() {
-		clear();
+		tree.getTree().clear();
+		Reader reader = null;
 		try {
-			config.load(file);
+			reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(file), Charset.defaultCharset()));
+			YAMLStream.read(reader, tree);
 		} catch (Exception ex) {
 			ex.printStackTrace();
+		} finally {
+			Closeables.closeQuietly(reader);
 		}
-		for (String entry : this.config.getKeys(true)) {
-			if (!(config.get(entry) instanceof MemorySection))
-				tree.set(entry, config.get(entry).toString());
-		}
-		clear();
 	}
 
 	@Override
 	public void save() {
-		clear();
-		for (Entry<String, String> entry : tree.getTree().entrySet()) {
-			if (entry.getValue() != null && !entry.getValue().isEmpty()
-					&& !StringUtils.isNumber(entry.getKey())) {
-				this.config.set(entry.getKey(), entry.getValue());
-			}
-		}
-		try {
-			this.config.save(file);
-		} catch (IOException e) {
-			e.printStackTrace();
+		SaveScheduler.save(this);
+	}
+
+	@Override
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public SaveScheduler.Snapshot snapshot() {
+		// the tree is already in path order, so a linked copy keeps it.
+		final Map<String, String> values = Maps.newLinkedHashMap();
+		for (Map.Entry<String, String> entry : tree.getTree().entrySet()) {
+			values.put(entry.getKey(), entry.getValue());
 		}
-		clear();
+		return new SaveScheduler.Snapshot() {
+			@Override
+			public void write(Writer writer) throws IOException {
+				YAMLStream.write(values, writer);
+			}
+		};
 	}
 
-	private void clear() {
-		for (String path : config.getKeys(true)) {
-			config.set(path, null);
+	private void changed() {
+		if (SaveScheduler.isSaveOften()) {
+			SaveScheduler.markDirty(this);
 		}
 	}
 
@@ -86,6 +100,11 @@ public class CachedYAMLHandler extends AbstractStorage {
 	@Override
 	public void removeKey(String path) {
 		this.tree.remove(path);
+		changed();
+	}
+
+	SettingsTree getTree() {
+		return tree;
 	}
 
 	public boolean pathExists(String path) {
@@ -121,6 +140,7 @@ public class CachedYAMLHandler extends AbstractStorage {
 	@Override
 	public void setString(String path, String value) {
 		this.tree.set(path, value);
+		changed();
 	}
 
 	@Override
@@ -144,6 +164,7 @@ public class CachedYAMLHandler extends AbstractStorage {
 	@Override
 	public void setInt(String path, int value) {
 		this.tree.set(path, String.valueOf(value));
+		changed();
 	}
 
 	@Override
@@ -167,6 +188,7 @@ public class CachedYAMLHandler extends AbstractStorage {
 	@Override
 	public void setDouble(String path, double value) {
 		this.tree.set(path, String.valueOf(value));
+		changed();
 	}
 
 	@Override
@@ -190,6 +212,7 @@ public class CachedYAMLHandler extends AbstractStorage {
 	@Override
 	public void setLong(String path, long value) {
 		this.tree.set(path, String.valueOf(value));
+		changed();
 	}
 
 	@Override
@@ -210,22 +233,24 @@ public class CachedYAMLHandler extends AbstractStorage {
 	@Override
 	public void setBoolean(String path, boolean value) {
 		this.tree.set(path, String.valueOf(value));
+		changed();
 	}
 
 	@Override
 	public List<String> getKeys(String path) {
-		if (path == null)
-			path = "";
-		else
-			path += ".";
+		Map<String, String> scope = path == null ? tree.getTree() : tree
+				.getSubTree(path);
+		String prefix = path == null ? "" : path + ".";
 		List<String> keys = Lists.newArrayList();
-		for (String key : this.tree.getTree().keySet()) {
-			if (key.startsWith(path) && key.length() > path.length()) {
-				key = key.replace(path, "");
-				int index = key.contains(".") ? key.indexOf('.') : key.length();
-				key = key.substring(0, index);
-				if (!keys.contains(key))
-					keys.add(key);
+		String last = null;
+		// descendants directly follow their parent, so duplicates are adjacent.
+		for (String key : scope.keySet()) {
+			int index = key.indexOf('.', prefix.length());
+			String child = key.substring(prefix.length(),
+					index == -1 ? key.length() : index);
+			if (!child.equals(last)) {
+				keys.add(child);
+				last = child;
 			}
 		}
 		return keys;
@@ -246,12 +271,16 @@ public class CachedYAMLHandler extends AbstractStorage {
 
 	@Override
 	public Object getRaw(String string) {
-		return config.get(string);
+		return get(string);
 	}
 
 	@Override
 	public void setRaw(String path, Object value) {
-		config.set(path, value);
+		if (value == null) {
+			removeKey(path);
+		} else {
+			setString(path, value.toString());
+		}
 	}
 
 	@Override
@@ -2,11 +2,12 @@ package net.citizensnpcs.properties;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 
-import net.citizensnpcs.Settings;
 import net.citizensnpcs.utils.Messaging;
 import net.citizensnpcs.utils.StringUtils;
 
@@ -16,9 +17,21 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
-public class ConfigurationHandler extends AbstractStorage {
+public class ConfigurationHandler extends AbstractStorage implements
+		SaveScheduler.Saveable {
 	private final FileConfiguration config;
 	private final File file;
+	private List<Object[]> changes;
+
+	/**
+	 * Creates a handler that isn't backed by a file. Its contents can be
+	 * loaded with {@link #loadFromString(String)} and retrieved with
+	 * {@link #saveToString()}.
+	 */
+	public ConfigurationHandler() {
+		this.file = null;
+		this.config = new YamlConfiguration();
+	}
 
 	public ConfigurationHandler(String fileName) {
 		this.file = new File(fileName);
@@ -33,6 +46,8 @@ public class ConfigurationHandler extends AbstractStorage {
 
 	@Override
 	public void load() {
+		if (file == null)
+			return;
 		try {
 			this.config.load(file);
 		} catch (Exception ex) {
@@ -42,10 +57,82 @@ public class ConfigurationHandler extends AbstractStorage {
 
 	@Override
 	public void save() {
+		if (file == null)
+			return;
+		SaveScheduler.save(this);
+	}
+
+	@Override
+	public File getFile() {
+		return file;
+	}
+
+	public void loadFromString(String data) {
 		try {
-			this.config.save(file);
-		} catch (IOException e) {
-			e.printStackTrace();
+			this.config.loadFromString(data);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	// Serializes the current contents, so that they can be written elsewhere.
+	public String saveToString() {
+		return this.config.saveToString();
+	}
+
+	@Override
+	public SaveScheduler.Snapshot snapshot() {
+		final String data = saveToString();
+		return new SaveScheduler.Snapshot() {
+			@Override
+			public void write(Writer writer) throws IOException {
+				writer.write(data);
+			}
+		};
+	}
+
+	/**
+	 * Starts recording every change made to this handler, so that they can be
+	 * replayed on a copy of it with {@link #apply(List)}.
+	 */
+	public void recordChanges() {
+		if (changes == null)
+			changes = Lists.newArrayList();
+	}
+
+	/**
+	 * Gets the changes recorded since the last call as path and value pairs,
+	 * where a null value is a removal.
+	 */
+	public List<Object[]> takeChanges() {
+		if (changes == null || changes.isEmpty())
+			return Collections.emptyList();
+		List<Object[]> taken = changes;
+		changes = Lists.newArrayList();
+		return taken;
+	}
+
+	// Replays changes taken from another handler, without recording them.
+	public void apply(List<Object[]> changes) {
+		for (Object[] change : changes) {
+			this.config.set((String) change[0], change[1]);
+		}
+	}
+
+	private void set(String path, Object value) {
+		this.config.set(path, value);
+		record(path, value);
+		changed();
+	}
+
+	private void record(String path, Object value) {
+		if (changes != null)
+			changes.add(new Object[] { path, value });
+	}
+
+	private void changed() {
+		if (file != null && SaveScheduler.isSaveOften()) {
+			SaveScheduler.markDirty(this);
 		}
 	}
 
@@ -63,10 +150,7 @@ public class ConfigurationHandler extends AbstractStorage {
 
 	@Override
 	public void removeKey(String path) {
-		this.config.set(path, null);
-		if (Settings.getBoolean("SaveOften")) {
-			save();
-		}
+		set(path, null);
 	}
 
 	public boolean pathExists(String path) {
@@ -97,10 +181,7 @@ public class ConfigurationHandler extends AbstractStorage {
 
 	@Override
 	public void setString(String path, String value) {
-		this.config.set(path, value);
-		if (Settings.getBoolean("SaveOften")) {
-			save();
-		}
+		set(path, value);
 	}
 
 	@Override
@@ -120,10 +201,7 @@ public class ConfigurationHandler extends AbstractStorage {
 
 	@Override
 	public void setInt(String path, int value) {
-		this.config.set(path, value);
-		if (Settings.getBoolean("SaveOften")) {
-			save();
-		}
+		set(path, value);
 	}
 
 	@Override
@@ -146,10 +224,7 @@ public class ConfigurationHandler extends AbstractStorage {
 
 	@Override
 	public void setDouble(String path, double value) {
-		this.config.set(path, String.valueOf(value));
-		if (Settings.getBoolean("SaveOften")) {
-			save();
-		}
+		set(path, String.valueOf(value));
 	}
 
 	@Override
@@ -172,10 +247,7 @@ public class ConfigurationHandler extends AbstractStorage {
 
 	@Override
 	public void setLong(String path, long value) {
-		this.config.set(path, value);
-		if (Settings.getBoolean("SaveOften")) {
-			save();
-		}
+		set(path, value);
 	}
 
 	@Override
@@ -195,10 +267,7 @@ public class ConfigurationHandler extends AbstractStorage {
 
 	@Override
 	public void setBoolean(String path, boolean value) {
-		this.config.set(path, value);
-		if (Settings.getBoolean("SaveOften")) {
-			save();
-		}
+		set(path, value);
 	}
 
 	@Override
@@ -219,6 +288,7 @@ public class ConfigurationHandler extends AbstractStorage {
 	@Override
 	public void setRaw(String path, Object value) {
 		config.set(path, value);
+		record(path, value);
 	}
 
 	@Override
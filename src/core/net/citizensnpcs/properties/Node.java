@@ -10,12 +10,14 @@ public class Node {
 	private final String name;
 	private final SettingsType type;
 	private final String path;
+	private final Object def;
 	private Object value;
 
 	public Node(String name, SettingsType type, String path, Object value) {
 		this.name = name;
 		this.type = type;
 		this.path = path;
+		this.def = value;
 		this.value = value;
 	}
 
@@ -67,6 +69,16 @@ public class Node {
 		return this.value;
 	}
 
+	/**
+	 * Get the default value of the node, which is written to the file if the
+	 * node is missing
+	 * 
+	 * @return def Default value of a node
+	 */
+	public Object getDefault() {
+		return this.def;
+	}
+
 	public void set(Object value) {
 		this.value = value;
 	}
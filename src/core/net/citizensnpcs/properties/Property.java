@@ -0,0 +1,71 @@
+package net.citizensnpcs.properties;
+
+import net.citizensnpcs.properties.codec.Codec;
+
+/**
+ * A typed handle to a single NPC property, declared through a
+ * {@link PropertySchema}. Values are decoded once into the NPC's
+ * {@link PropertyRecord} and written straight through to storage, so the
+ * file layout is the same as when the keys were built by hand.
+ */
+public class Property<T> {
+	private final String path;
+	private final String suffix;
+	private final Codec<T> codec;
+	private final T def;
+	final int index;
+
+	Property(String path, Codec<T> codec, T def, int index) {
+		this.path = path;
+		this.suffix = "." + path;
+		this.codec = codec;
+		this.def = def;
+		this.index = index;
+	}
+
+	/**
+	 * Gets the path of this property relative to an NPC's root, for example
+	 * "basic.name".
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	public String getKey(int UID) {
+		return UID + suffix;
+	}
+
+	Codec<T> getCodec() {
+		return codec;
+	}
+
+	public T get(int UID) {
+		return get(UID, def);
+	}
+
+	/**
+	 * Gets the value of this property, or the given default if it hasn't been
+	 * set. Must be called from the main thread.
+	 */
+	public T get(int UID, T def) {
+		T value = PropertyRecord.get(UID).get(this);
+		return value == null ? def : value;
+	}
+
+	public boolean exists(int UID) {
+		return PropertyRecord.get(UID).get(this) != null;
+	}
+
+	/**
+	 * Reads the value straight from the given storage without touching the
+	 * cached records, so that it is safe to call from any thread.
+	 */
+	public T read(Storage storage, int UID, T def) {
+		T value = codec.decode(storage.getString(getKey(UID)));
+		return value == null ? def : value;
+	}
+
+	public void set(int UID, T value) {
+		PropertyRecord.get(UID).set(this, value);
+	}
+}
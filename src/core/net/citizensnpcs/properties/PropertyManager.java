@@ -1,22 +1,74 @@
 package net.citizensnpcs.properties;
 
+import java.sql.SQLException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
+import net.citizensnpcs.npcdata.NPCAttributes;
+import net.citizensnpcs.properties.db.ConnectionInfo;
+import net.citizensnpcs.properties.db.DatabaseStorage;
+import net.citizensnpcs.properties.db.DatabaseType;
 import net.citizensnpcs.properties.properties.BasicProperties;
 import net.citizensnpcs.properties.properties.UtilityProperties;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 import net.citizensnpcs.resources.npclib.NPCManager;
+import net.citizensnpcs.resources.npclib.NPCSpawnDescriptor;
+import net.citizensnpcs.utils.Messaging;
 
 public class PropertyManager {
 	private static final Map<String, Properties> properties = new HashMap<String, Properties>();
-	protected static final Storage profiles = new CachedYAMLHandler(
-			"plugins/Citizens/npc-profiles.yml");
+	protected static Storage profiles;
 
 	public static void registerProperties() {
 		add("basic", new BasicProperties());
 		UtilityProperties.load();
+		if (profiles == null) {
+			profiles = createStorage(UtilityProperties.getConfig());
+		}
+	}
+
+	private static Storage createStorage(Storage config) {
+		return createStorage(config.keyExists("storage.type") ? config
+				.getString("storage.type") : "yaml", config);
+	}
+
+	/**
+	 * Opens the NPC profile storage of the given type (yaml, sharded or
+	 * database), falling back to YAML if it can't be opened.
+	 */
+	public static Storage createStorage(String type, Storage config) {
+		if (type.equalsIgnoreCase("sharded")) {
+			int size = config.keyExists("storage.shard-size") ? config
+					.getInt("storage.shard-size") : 64;
+			return new ShardedYAMLStorage(SHARD_DIRECTORY,
+					"plugins/Citizens/npc-profiles.yml", Math.max(1, size));
+		}
+		if (type.equalsIgnoreCase("database")) {
+			try {
+				return createDatabaseStorage(config);
+			} catch (Exception ex) {
+				Messaging.log("Unable to connect to database, falling back to YAML: "
+						+ ex.getMessage());
+			}
+		}
+		return new CachedYAMLHandler("plugins/Citizens/npc-profiles.yml");
+	}
+
+	private static Storage createDatabaseStorage(Storage config)
+			throws ClassNotFoundException, SQLException {
+		DatabaseType type = DatabaseType.fromName(config.getString(
+				"storage.database.type", "sqlite"));
+		if (type == null)
+			throw new IllegalArgumentException("unknown database type");
+		ConnectionInfo info = new ConnectionInfo(config.getString(
+				"storage.database.url",
+				"jdbc:sqlite:plugins/Citizens/npcs.db"), config.getString(
+				"storage.database.username", ""), config.getString(
+				"storage.database.password", ""));
+		return new DatabaseStorage(type.getDriver(), info, Math.max(1,
+				config.getInt("storage.database.pool-size", 3)));
 	}
 
 	public static void add(String type, Properties saveable) {
@@ -27,6 +79,15 @@ public class PropertyManager {
 		return profiles;
 	}
 
+	// Switches to a different profile storage, closing the old one if needed.
+	public static void setNPCProfiles(Storage storage) {
+		Storage old = profiles;
+		profiles = storage;
+		PropertyRecord.clear();
+		if (old instanceof DatabaseStorage && old != storage)
+			((DatabaseStorage) old).close();
+	}
+
 	public static boolean npcHasType(HumanNPC npc, String type) {
 		return profiles.keyExists(npc.getUID() + "." + type);
 	}
@@ -47,6 +108,19 @@ public class PropertyManager {
 		}
 	}
 
+	// Loads an NPC, taking the basic properties from an already parsed
+	// descriptor.
+	public static void load(HumanNPC npc, NPCSpawnDescriptor descriptor) {
+		for (Entry<String, Properties> entry : properties.entrySet()) {
+			if (!exists(npc) || !entry.getValue().isEnabled(npc))
+				continue;
+			if (entry.getKey().equals("basic")) {
+				getBasic().loadState(npc, descriptor);
+			} else
+				entry.getValue().loadState(npc);
+		}
+	}
+
 	public static void load(String type, HumanNPC npc) {
 		if (!exists(npc) || !get(type).isEnabled(npc))
 			return;
@@ -68,7 +142,12 @@ public class PropertyManager {
 	}
 
 	public static void remove(HumanNPC npc) {
-		profiles.removeKey("" + npc.getUID());
+		remove(npc.getUID());
+	}
+
+	public static void remove(int UID) {
+		profiles.removeKey("" + UID);
+		PropertyRecord.invalidate(UID);
 	}
 
 	public static Properties get(String string) {
@@ -86,6 +165,7 @@ public class PropertyManager {
 				recurseCopy("." + node, UID, newUID);
 			}
 		}
+		PropertyRecord.invalidate(newUID);
 	}
 
 	private static void recurseCopy(String root, int UID, int newUID) {
@@ -99,9 +179,10 @@ public class PropertyManager {
 		}
 	}
 
-	private static void saveAllNPCs() {
-		for (HumanNPC npc : NPCManager.getList().values()) {
-			save(npc);
+	public static void saveAllNPCs() {
+		NPCAttributes attributes = NPCManager.getAttributes();
+		for (int slot = 0; slot < attributes.size(); ++slot) {
+			save(attributes.getNPC(slot));
 		}
 	}
 
@@ -112,8 +193,11 @@ public class PropertyManager {
 
 	public static void loadAll() {
 		profiles.load();
+		PropertyRecord.clear();
 		for (HumanNPC npc : NPCManager.getList().values()) {
 			load(npc);
 		}
 	}
-}
\ No newline at end of file
+
+	static final String SHARD_DIRECTORY = "plugins/Citizens/npcs";
+}
@@ -0,0 +1,93 @@
+package net.citizensnpcs.properties;
+
+import java.util.Arrays;
+
+import net.citizensnpcs.properties.codec.Codec;
+
+/**
+ * The decoded property values of a single NPC, indexed by
+ * {@link Property} slot. Records are kept in an array indexed by UID and are
+ * only used from the main thread; anything that changes storage behind their
+ * back has to invalidate them.
+ */
+public class PropertyRecord {
+	private static PropertyRecord[] records = new PropertyRecord[64];
+	private final int UID;
+	private Object[] values = new Object[0];
+	private boolean[] loaded = new boolean[0];
+	private String[] keys = new String[0];
+
+	private PropertyRecord(int UID) {
+		this.UID = UID;
+	}
+
+	@SuppressWarnings("unchecked")
+	<T> T get(Property<T> property) {
+		int index = property.index;
+		ensureCapacity(index);
+		Codec<T> codec = property.getCodec();
+		T value = (T) values[index];
+		if (!loaded[index] || value != null && !codec.isCacheable(value)) {
+			value = codec.decode(PropertyManager.profiles
+					.getString(getKey(property)));
+			values[index] = value;
+			loaded[index] = true;
+		}
+		return value == null ? null : codec.copy(value);
+	}
+
+	<T> void set(Property<T> property, T value) {
+		int index = property.index;
+		ensureCapacity(index);
+		Codec<T> codec = property.getCodec();
+		PropertyManager.profiles.setString(getKey(property),
+				codec.encode(value));
+		boolean cacheable = value == null || codec.isCacheable(value);
+		values[index] = cacheable && value != null ? codec.copy(value) : null;
+		loaded[index] = cacheable;
+	}
+
+	// The full key is built once per NPC and reused for every access.
+	private String getKey(Property<?> property) {
+		String key = keys[property.index];
+		if (key == null)
+			key = keys[property.index] = property.getKey(UID);
+		return key;
+	}
+
+	private void ensureCapacity(int index) {
+		if (index < values.length)
+			return;
+		int size = Math.max(index + 1, PropertySchema.getCount());
+		values = Arrays.copyOf(values, size);
+		loaded = Arrays.copyOf(loaded, size);
+		keys = Arrays.copyOf(keys, size);
+	}
+
+	static PropertyRecord get(int UID) {
+		if (UID < 0)
+			return new PropertyRecord(UID);
+		if (UID >= records.length)
+			records = Arrays.copyOf(records,
+					Math.max(UID + 1, records.length * 2));
+		PropertyRecord record = records[UID];
+		if (record == null)
+			record = records[UID] = new PropertyRecord(UID);
+		return record;
+	}
+
+	/**
+	 * Forgets the cached values of an NPC, for example after its storage
+	 * entries were removed or copied over.
+	 */
+	public static void invalidate(int UID) {
+		if (UID >= 0 && UID < records.length)
+			records[UID] = null;
+	}
+
+	// Forgets every cached value, for when the storage was reloaded or
+	// replaced.
+	public static void clear() {
+		Arrays.fill(records, null);
+	}
+}
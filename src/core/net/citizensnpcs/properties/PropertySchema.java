@@ -0,0 +1,46 @@
+package net.citizensnpcs.properties;
+
+import java.util.Collections;
+import java.util.List;
+
+import net.citizensnpcs.properties.codec.Codec;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The properties stored by a {@link Properties} class, all sharing a root
+ * such as "basic" or "guard". Each property is given a slot in every NPC's
+ * {@link PropertyRecord}.
+ */
+public class PropertySchema {
+	private static int count;
+	private final String root;
+	private final List<Property<?>> properties = Lists.newArrayList();
+
+	public PropertySchema(String root) {
+		this.root = root;
+	}
+
+	public <T> Property<T> add(String name, Codec<T> codec, T def) {
+		Property<T> property = new Property<T>(root + "." + name, codec, def,
+				nextIndex());
+		properties.add(property);
+		return property;
+	}
+
+	public List<Property<?>> getProperties() {
+		return Collections.unmodifiableList(properties);
+	}
+
+	public String getRoot() {
+		return root;
+	}
+
+	static synchronized int getCount() {
+		return count;
+	}
+
+	private static synchronized int nextIndex() {
+		return count++;
+	}
+}
@@ -0,0 +1,263 @@
+package net.citizensnpcs.properties;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import net.citizensnpcs.Settings;
+import net.citizensnpcs.utils.Messaging;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+
+/**
+ * Coalesces saves of frequently modified files. Files are marked dirty when
+ * they change and are serialized once they have been quiet for a short
+ * period (or have been dirty for too long), then written on a background
+ * thread.
+ */
+public class SaveScheduler {
+	private static final Map<Saveable, Dirty> dirty = Maps.newLinkedHashMap();
+	private static final Map<File, Long> written = Maps.newHashMap();
+	private static final AtomicLong sequence = new AtomicLong();
+	private static final Object writeLock = new Object();
+	private static ExecutorService executor;
+	private static int taskID = -1;
+	private static long tick;
+	private static volatile boolean paused;
+
+	/**
+	 * Something that can be written to a file by the scheduler.
+	 */
+	public interface Saveable {
+		public File getFile();
+
+		// Called on the main thread; the result is written asynchronously.
+		public Snapshot snapshot();
+	}
+
+	/**
+	 * An immutable copy of a file's contents.
+	 */
+	public interface Snapshot {
+		public void write(Writer writer) throws IOException;
+	}
+
+	public static void start(Plugin plugin) {
+		if (taskID != -1)
+			return;
+		taskID = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin,
+				new Runnable() {
+					@Override
+					public void run() {
+						tick += CHECK_INTERVAL;
+						flushDue(false);
+					}
+				}, CHECK_INTERVAL, CHECK_INTERVAL);
+	}
+
+	/**
+	 * Whether changes should be saved without waiting for an explicit save.
+	 * Always false while settings are still being loaded.
+	 */
+	public static boolean isSaveOften() {
+		return Settings.isLoaded("SaveOften")
+				&& Settings.getBoolean("SaveOften");
+	}
+
+	public static void markDirty(Saveable saveable) {
+		synchronized (dirty) {
+			Dirty state = dirty.get(saveable);
+			if (state == null) {
+				dirty.put(saveable, new Dirty(tick));
+			} else {
+				state.last = tick;
+			}
+		}
+	}
+
+	/**
+	 * Writes the given file immediately on the calling thread, superseding
+	 * any pending write of it. While paused, the file is only marked dirty.
+	 */
+	public static void save(Saveable saveable) {
+		if (paused) {
+			markDirty(saveable);
+			return;
+		}
+		synchronized (dirty) {
+			dirty.remove(saveable);
+		}
+		try {
+			write(saveable.getFile(), saveable.snapshot(),
+					sequence.incrementAndGet());
+		} catch (IOException ex) {
+			Messaging.log("Unable to save " + saveable.getFile().getPath()
+					+ ": " + ex.getMessage(), Level.SEVERE);
+		}
+	}
+
+	/**
+	 * Writes every dirty file and waits for pending writes to finish.
+	 */
+	public static void flush() {
+		if (taskID != -1) {
+			Bukkit.getScheduler().cancelTask(taskID);
+			taskID = -1;
+		}
+		flushDue(true);
+		ExecutorService current;
+		synchronized (SaveScheduler.class) {
+			current = executor;
+			executor = null;
+		}
+		if (current == null)
+			return;
+		current.shutdown();
+		try {
+			if (!current.awaitTermination(FLUSH_TIMEOUT, TimeUnit.SECONDS))
+				Messaging.log("Timed out waiting for files to save.",
+						Level.WARNING);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Holds back every save until {@link #resume()}, so that files being
+	 * replaced on disk aren't overwritten in the meantime. Writes that don't
+	 * come from a Saveable still go through.
+	 */
+	public static void pause() {
+		paused = true;
+	}
+
+	public static void resume() {
+		paused = false;
+	}
+
+	/**
+	 * Throws away pending saves, for example because the files are about to
+	 * be reloaded from disk.
+	 */
+	public static void discard() {
+		synchronized (dirty) {
+			dirty.clear();
+		}
+	}
+
+	private static void flushDue(boolean all) {
+		if (paused)
+			return;
+		List<Saveable> due = Lists.newArrayList();
+		long quiet = Settings.getInt("SaveQuietPeriod");
+		long max = Settings.getInt("SaveMaxDelay");
+		synchronized (dirty) {
+			Iterator<Map.Entry<Saveable, Dirty>> itr = dirty.entrySet()
+					.iterator();
+			while (itr.hasNext()) {
+				Map.Entry<Saveable, Dirty> entry = itr.next();
+				Dirty state = entry.getValue();
+				if (all || tick - state.last >= quiet
+						|| tick - state.first >= max) {
+					due.add(entry.getKey());
+					itr.remove();
+				}
+			}
+		}
+		for (Saveable saveable : due) {
+			final File file = saveable.getFile();
+			final Snapshot data = saveable.snapshot();
+			final long id = sequence.incrementAndGet();
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						write(file, data, id);
+					} catch (IOException ex) {
+						Messaging.log("Unable to save " + file.getPath() + ": "
+								+ ex.getMessage(), Level.SEVERE);
+					}
+				}
+			});
+		}
+	}
+
+	// Writes data that doesn't come from a Saveable, superseding pending
+	// writes of the file.
+	static void write(File file, Snapshot data) throws IOException {
+		write(file, data, sequence.incrementAndGet());
+	}
+
+	// Writes to a temporary file first so that a crash never leaves a
+	// truncated file behind. Older snapshots never overwrite newer ones.
+	private static void write(File file, Snapshot data, long id)
+			throws IOException {
+		synchronized (writeLock) {
+			Long last = written.get(file);
+			if (last != null && last > id)
+				return;
+			written.put(file, id);
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null)
+				parent.mkdirs();
+			File temp = new File(file.getPath() + ".tmp");
+			Writer writer = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(temp), Charset.defaultCharset()));
+			try {
+				data.write(writer);
+			} finally {
+				Closeables.close(writer, false);
+			}
+			if (!temp.renameTo(file)) {
+				// renaming over an existing file fails on some platforms.
+				file.delete();
+				if (!temp.renameTo(file))
+					throw new IOException("unable to replace " + file.getName());
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null || executor.isShutdown()) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Citizens file saver");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	private static class Dirty {
+		private final long first;
+		private long last;
+
+		Dirty(long tick) {
+			this.first = this.last = tick;
+		}
+	}
+
+	private static final int CHECK_INTERVAL = 5;
+	private static final int FLUSH_TIMEOUT = 30;
+}
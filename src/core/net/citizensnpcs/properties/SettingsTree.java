@@ -1,13 +1,14 @@
 package net.citizensnpcs.properties;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import net.citizensnpcs.utils.Messaging;
 
 public class SettingsTree {
-	private final Map<String, String> tree = new ConcurrentHashMap<String, String>(
-			100);
+	private final ConcurrentNavigableMap<String, String> tree = new ConcurrentSkipListMap<String, String>(
+			YAMLStream.PATH_ORDER);
 
 	public void populate(String path) {
 		StringBuilder progressive = new StringBuilder();
@@ -28,10 +29,16 @@ public class SettingsTree {
 		return tree.get(path);
 	}
 
+	// Gets the whole tree, in path order.
 	public Map<String, String> getTree() {
 		return tree;
 	}
 
+	// Gets every path below the given path, in path order.
+	public Map<String, String> getSubTree(String path) {
+		return tree.subMap(path + ".", path + CHILDREN_END);
+	}
+
 	public void set(String path, String value) {
 		if (!path.equals(value)) {
 			tree.put(path, value);
@@ -42,10 +49,10 @@ public class SettingsTree {
 	}
 
 	public void remove(String path) {
-		for (String key : tree.keySet()) {
-			if (!key.startsWith(path))
-				continue;
-			tree.remove(key);
-		}
+		tree.remove(path);
+		getSubTree(path).clear();
 	}
+
+	// Sorts after every child of a path and before its next sibling.
+	private static final char CHILDREN_END = '\u0000';
 }
\ No newline at end of file
@@ -0,0 +1,331 @@
+package net.citizensnpcs.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.citizensnpcs.utils.Messaging;
+import net.citizensnpcs.utils.StringUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+
+/**
+ * Splits NPC profiles into UID buckets, each stored in its own file. Only
+ * buckets that were modified since the last save are written back to disk.
+ * The bucket size the files were written with is kept in the global file, and
+ * the buckets are rebuilt on load if it no longer matches.
+ */
+public class ShardedYAMLStorage extends AbstractStorage {
+	private final Map<Integer, Shard> shards = new MapMaker().makeMap();
+	private final File directory;
+	private final File legacy;
+	private final int bucketSize;
+
+	public ShardedYAMLStorage(String directory, String legacy, int bucketSize) {
+		if (bucketSize <= 0)
+			throw new IllegalArgumentException("bucket size must be positive");
+		this.directory = new File(directory);
+		this.legacy = new File(legacy);
+		this.bucketSize = bucketSize;
+		load();
+	}
+
+	@Override
+	public void load() {
+		shards.clear();
+		this.directory.mkdirs();
+		for (File file : directory.listFiles()) {
+			Matcher matcher = SHARD_FILE.matcher(file.getName());
+			if (!matcher.matches())
+				continue;
+			int bucket = matcher.group(1).isEmpty() ? GLOBAL : Integer
+					.parseInt(matcher.group(1));
+			shards.put(bucket, new Shard(file));
+		}
+		if (shards.isEmpty() && legacy.exists()) {
+			migrate();
+		}
+		Shard global = shards.get(GLOBAL);
+		int stored = global != null && global.storage.keyExists(SIZE_KEY) ? global.storage
+				.getInt(SIZE_KEY) : 0;
+		if (stored == bucketSize)
+			return;
+		if (shards.size() > (global == null ? 0 : 1) && !rebucket(stored))
+			return;
+		// written last, so that an interrupted rebuild is started again.
+		setInt(SIZE_KEY, bucketSize);
+		write(shards.get(GLOBAL));
+	}
+
+	@Override
+	public void save() {
+		for (Shard shard : shards.values()) {
+			shard.save();
+		}
+	}
+
+	// The files of every shard, for backups.
+	public List<SaveScheduler.Saveable> getSaveables() {
+		List<SaveScheduler.Saveable> saveables = Lists.newArrayList();
+		for (Shard shard : shards.values()) {
+			saveables.add(shard.storage);
+		}
+		return saveables;
+	}
+
+	private void migrate() {
+		Messaging.log("Splitting " + legacy.getName() + " into "
+				+ directory.getPath() + ".");
+		CachedYAMLHandler old = new CachedYAMLHandler(legacy.getPath());
+		for (Entry<String, String> entry : old.getTree().getTree().entrySet()) {
+			if (entry.getValue().isEmpty())
+				continue;
+			setString(entry.getKey(), entry.getValue());
+		}
+		save();
+		Messaging.log("Split " + old.getKeys(null).size()
+				+ " NPC profiles into " + shards.size() + " files.");
+	}
+
+	// Moves every NPC into the bucket for the current size. Old files are only
+	// deleted once the new ones are written, so a crash leaves duplicates that
+	// the next rebuild merges rather than losing NPCs.
+	private boolean rebucket(int stored) {
+		Messaging.log("Moving NPC profiles from "
+				+ (stored == 0 ? "unknown" : Integer.toString(stored))
+				+ " to " + bucketSize + " per file.");
+		Map<String, String> values = Maps.newLinkedHashMap();
+		for (Entry<Integer, Shard> entry : shards.entrySet()) {
+			if (entry.getKey() == GLOBAL)
+				continue;
+			Map<String, String> tree = entry.getValue().storage.getTree()
+					.getTree();
+			for (Entry<String, String> value : tree.entrySet()) {
+				if (!value.getValue().isEmpty())
+					values.put(value.getKey(), value.getValue());
+			}
+			tree.clear();
+		}
+		for (Entry<String, String> entry : values.entrySet()) {
+			setString(entry.getKey(), entry.getValue());
+		}
+		for (Entry<Integer, Shard> entry : shards.entrySet()) {
+			if (entry.getKey() != GLOBAL
+					&& !entry.getValue().storage.getTree().getTree().isEmpty()
+					&& !write(entry.getValue()))
+				return false;
+		}
+		Iterator<Entry<Integer, Shard>> itr = shards.entrySet().iterator();
+		while (itr.hasNext()) {
+			Entry<Integer, Shard> entry = itr.next();
+			if (entry.getKey() == GLOBAL
+					|| !entry.getValue().storage.getTree().getTree().isEmpty())
+				continue;
+			itr.remove();
+			File file = entry.getValue().storage.getFile();
+			if (!file.delete())
+				Messaging.log("Unable to delete " + file.getName() + ".");
+		}
+		return true;
+	}
+
+	// Writes a shard straight away, even while saves are paused.
+	private boolean write(Shard shard) {
+		try {
+			SaveScheduler.write(shard.storage.getFile(), shard.storage.snapshot());
+			shard.dirty = false;
+			return true;
+		} catch (IOException ex) {
+			Messaging.log("Unable to save " + shard.storage.getFile().getPath()
+					+ ": " + ex.getMessage(), Level.SEVERE);
+			return false;
+		}
+	}
+
+	// Deletes every shard file in a directory, before restoring a backup.
+	static void deleteShards(File directory) {
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			if (SHARD_FILE.matcher(file.getName()).matches() && !file.delete())
+				Messaging.log("Unable to delete " + file.getName() + ".");
+		}
+	}
+
+	private int getBucket(String key) {
+		int index = key.indexOf('.');
+		String root = index == -1 ? key : key.substring(0, index);
+		if (!StringUtils.isNumber(root) || root.length() > 9)
+			return GLOBAL;
+		return Integer.parseInt(root) / bucketSize;
+	}
+
+	private Shard getShard(String key) {
+		return shards.get(getBucket(key));
+	}
+
+	private Shard getOrCreateShard(String key) {
+		int bucket = getBucket(key);
+		Shard shard = shards.get(bucket);
+		if (shard == null) {
+			shard = new Shard(new File(directory, "npcs"
+					+ (bucket == GLOBAL ? "" : "-" + bucket) + ".yml"));
+			shards.put(bucket, shard);
+		}
+		return shard;
+	}
+
+	@Override
+	public void removeKey(String key) {
+		Shard shard = getShard(key);
+		if (shard == null)
+			return;
+		shard.storage.removeKey(key);
+		shard.dirty = true;
+	}
+
+	@Override
+	public String getString(String key) {
+		Shard shard = getShard(key);
+		return shard == null ? "" : shard.storage.getString(key);
+	}
+
+	@Override
+	public void setString(String key, String value) {
+		Shard shard = getOrCreateShard(key);
+		shard.storage.setString(key, value);
+		shard.dirty = true;
+	}
+
+	@Override
+	public int getInt(String key) {
+		Shard shard = getShard(key);
+		return shard == null ? 0 : shard.storage.getInt(key);
+	}
+
+	@Override
+	public void setInt(String key, int value) {
+		Shard shard = getOrCreateShard(key);
+		shard.storage.setInt(key, value);
+		shard.dirty = true;
+	}
+
+	@Override
+	public double getDouble(String key) {
+		Shard shard = getShard(key);
+		return shard == null ? 0 : shard.storage.getDouble(key);
+	}
+
+	@Override
+	public void setDouble(String key, double value) {
+		Shard shard = getOrCreateShard(key);
+		shard.storage.setDouble(key, value);
+		shard.dirty = true;
+	}
+
+	@Override
+	public long getLong(String key) {
+		Shard shard = getShard(key);
+		return shard == null ? 0 : shard.storage.getLong(key);
+	}
+
+	@Override
+	public void setLong(String key, long value) {
+		Shard shard = getOrCreateShard(key);
+		shard.storage.setLong(key, value);
+		shard.dirty = true;
+	}
+
+	@Override
+	public boolean getBoolean(String key) {
+		Shard shard = getShard(key);
+		return shard != null && shard.storage.getBoolean(key);
+	}
+
+	@Override
+	public void setBoolean(String key, boolean value) {
+		Shard shard = getOrCreateShard(key);
+		shard.storage.setBoolean(key, value);
+		shard.dirty = true;
+	}
+
+	@Override
+	public Object getRaw(String key) {
+		Shard shard = getShard(key);
+		return shard == null ? null : shard.storage.getRaw(key);
+	}
+
+	@Override
+	public void setRaw(String key, Object value) {
+		Shard shard = getOrCreateShard(key);
+		shard.storage.setRaw(key, value);
+		shard.dirty = true;
+	}
+
+	@Override
+	public boolean keyExists(String key) {
+		Shard shard = getShard(key);
+		return shard != null && shard.storage.keyExists(key);
+	}
+
+	@Override
+	public Collection<String> getKeys(String path) {
+		if (path == null || path.isEmpty()) {
+			List<String> keys = Lists.newArrayList();
+			for (Shard shard : shards.values()) {
+				keys.addAll(shard.storage.getKeys(null));
+			}
+			return keys;
+		}
+		Shard shard = getShard(path);
+		return shard == null ? Collections.<String> emptyList() : shard.storage
+				.getKeys(path);
+	}
+
+	@Override
+	public List<Integer> getIntegerKeys(String path) {
+		if (path == null || path.isEmpty()) {
+			List<Integer> keys = Lists.newArrayList();
+			for (Shard shard : shards.values()) {
+				keys.addAll(shard.storage.getIntegerKeys(null));
+			}
+			Collections.sort(keys);
+			return keys;
+		}
+		Shard shard = getShard(path);
+		return shard == null ? Lists.<Integer> newArrayList() : shard.storage
+				.getIntegerKeys(path);
+	}
+
+	private static class Shard {
+		private final CachedYAMLHandler storage;
+		private volatile boolean dirty;
+
+		Shard(File file) {
+			this.storage = new CachedYAMLHandler(file.getPath());
+		}
+
+		void save() {
+			if (!dirty)
+				return;
+			dirty = false;
+			storage.save();
+		}
+	}
+
+	private static final int GLOBAL = -1;
+	private static final String SIZE_KEY = "shards.bucket-size";
+	private static final Pattern SHARD_FILE = Pattern
+			.compile("^npcs-?([0-9]*)\\.yml$");
+}
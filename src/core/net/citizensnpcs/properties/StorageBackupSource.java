@@ -0,0 +1,83 @@
+package net.citizensnpcs.properties;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.logging.Level;
+
+import net.citizensnpcs.properties.properties.UtilityProperties;
+import net.citizensnpcs.utils.Messaging;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Backs up the settings files and the NPC profiles, if they are stored in
+ * YAML. Any other YAML file in the data folder is restored as well. Shard
+ * files left over from after the backup are removed when it is restored.
+ */
+public class StorageBackupSource implements BackupSource {
+	private boolean shardsCleared;
+
+	@Override
+	public Task prepare() {
+		List<SaveScheduler.Saveable> saveables = Lists.newArrayList();
+		add(saveables, UtilityProperties.getConfig());
+		add(saveables, UtilityProperties.getMobSettings());
+		Storage profiles = PropertyManager.getNPCProfiles();
+		if (profiles instanceof ShardedYAMLStorage) {
+			saveables.addAll(((ShardedYAMLStorage) profiles).getSaveables());
+		} else if (profiles instanceof SaveScheduler.Saveable) {
+			add(saveables, profiles);
+		} else
+			Messaging.log("NPC profiles are stored in a database and are not"
+					+ " included in backups; back up the database separately.",
+					Level.WARNING);
+		return snapshot(saveables);
+	}
+
+	@Override
+	public boolean restore(String entry, Reader reader) throws IOException {
+		if (!entry.endsWith(".yml"))
+			return false;
+		File shards = new File(PropertyManager.SHARD_DIRECTORY);
+		if (!shardsCleared
+				&& entry.startsWith(BackupManager.getEntryName(shards) + "/")) {
+			ShardedYAMLStorage.deleteShards(shards);
+			shardsCleared = true;
+		}
+		BackupManager.restoreFile(entry, reader);
+		return true;
+	}
+
+	@Override
+	public void beginRestore() {
+		shardsCleared = false;
+	}
+
+	private static void add(List<SaveScheduler.Saveable> saveables,
+			Storage storage) {
+		if (storage instanceof SaveScheduler.Saveable)
+			saveables.add((SaveScheduler.Saveable) storage);
+	}
+
+	/**
+	 * Snapshots the given files, returning a task that adds them to a backup.
+	 */
+	public static Task snapshot(List<SaveScheduler.Saveable> saveables) {
+		final List<String> names = Lists.newArrayList();
+		final List<SaveScheduler.Snapshot> snapshots = Lists.newArrayList();
+		for (SaveScheduler.Saveable saveable : saveables) {
+			names.add(BackupManager.getEntryName(saveable.getFile()));
+			snapshots.add(saveable.snapshot());
+		}
+		return new Task() {
+			@Override
+			public void write(BackupManager.Archive archive) throws IOException {
+				for (int i = 0; i < names.size(); ++i) {
+					archive.add(names.get(i), snapshots.get(i));
+				}
+			}
+		};
+	}
+}
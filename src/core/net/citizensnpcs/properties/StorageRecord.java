@@ -0,0 +1,254 @@
+package net.citizensnpcs.properties;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Every value stored below a single root key (usually an NPC's UID), keyed by
+ * path relative to the root. Records are written to files as one line of
+ * JSON: {"root":"0","properties":{"basic.name":"Bob",...}}.
+ */
+public class StorageRecord {
+	private final String root;
+	private final Map<String, String> properties;
+
+	public StorageRecord(String root, Map<String, String> properties) {
+		this.root = root;
+		this.properties = Collections.unmodifiableMap(properties);
+	}
+
+	public String getRoot() {
+		return root;
+	}
+
+	public Map<String, String> getProperties() {
+		return properties;
+	}
+
+	/**
+	 * Sets every value of this record in the given storage.
+	 */
+	public void write(Storage storage) {
+		for (Entry<String, String> entry : properties.entrySet()) {
+			storage.setString(entry.getKey().isEmpty() ? root : root + "."
+					+ entry.getKey(), entry.getValue());
+		}
+	}
+
+	public String toJSON() {
+		StringBuilder builder = new StringBuilder(64 + properties.size() * 32);
+		builder.append("{\"root\":");
+		quote(builder, root);
+		builder.append(",\"properties\":{");
+		boolean first = true;
+		for (Entry<String, String> entry : properties.entrySet()) {
+			if (!first)
+				builder.append(',');
+			first = false;
+			quote(builder, entry.getKey());
+			builder.append(':');
+			quote(builder, entry.getValue());
+		}
+		return builder.append("}}").toString();
+	}
+
+	/**
+	 * Reads every non-empty value below the given root.
+	 */
+	public static StorageRecord read(Storage storage, String root) {
+		Map<String, String> properties = Maps.newLinkedHashMap();
+		collect(storage, root, "", properties);
+		return new StorageRecord(root, properties);
+	}
+
+	private static void collect(Storage storage, String path, String relative,
+			Map<String, String> properties) {
+		String value = storage.getString(path);
+		if (value != null && !value.isEmpty())
+			properties.put(relative, value);
+		for (String child : storage.getKeys(path)) {
+			collect(storage, path + "." + child, relative.isEmpty() ? child
+					: relative + "." + child, properties);
+		}
+	}
+
+	private static void quote(StringBuilder builder, String string) {
+		builder.append('"');
+		for (int i = 0; i < string.length(); ++i) {
+			char c = string.charAt(i);
+			switch (c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			default:
+				if (c < ' ')
+					builder.append(String.format("\\u%04x", (int) c));
+				else
+					builder.append(c);
+			}
+		}
+		builder.append('"');
+	}
+
+	/**
+	 * Parses a record written by {@link #toJSON()}. Numbers, booleans and
+	 * nulls are accepted as values and kept as their text.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the line isn't a valid record
+	 */
+	public static StorageRecord parse(String line) {
+		Parser parser = new Parser(line);
+		String root = null;
+		Map<String, String> properties = null;
+		parser.expect('{');
+		if (!parser.consume('}')) {
+			do {
+				String key = parser.string();
+				parser.expect(':');
+				if (key.equals("properties")) {
+					properties = parser.object();
+				} else if (key.equals("root")) {
+					root = parser.value();
+				} else
+					parser.value();
+			} while (parser.consume(','));
+			parser.expect('}');
+		}
+		parser.end();
+		if (root == null || properties == null)
+			throw new IllegalArgumentException("missing root or properties");
+		return new StorageRecord(root, properties);
+	}
+
+	private static class Parser {
+		private final String input;
+		private int index;
+
+		Parser(String input) {
+			this.input = input;
+		}
+
+		boolean consume(char c) {
+			skipWhitespace();
+			if (index < input.length() && input.charAt(index) == c) {
+				++index;
+				return true;
+			}
+			return false;
+		}
+
+		void end() {
+			skipWhitespace();
+			if (index != input.length())
+				throw error("trailing characters");
+		}
+
+		void expect(char c) {
+			if (!consume(c))
+				throw error("expected '" + c + "'");
+		}
+
+		Map<String, String> object() {
+			Map<String, String> values = Maps.newLinkedHashMap();
+			expect('{');
+			if (consume('}'))
+				return values;
+			do {
+				String key = string();
+				expect(':');
+				values.put(key, value());
+			} while (consume(','));
+			expect('}');
+			return values;
+		}
+
+		String value() {
+			skipWhitespace();
+			if (index < input.length() && input.charAt(index) == '"')
+				return string();
+			int start = index;
+			while (index < input.length()
+					&& ",}] \t".indexOf(input.charAt(index)) == -1)
+				++index;
+			if (start == index)
+				throw error("expected a value");
+			return input.substring(start, index);
+		}
+
+		String string() {
+			expect('"');
+			StringBuilder builder = new StringBuilder();
+			while (true) {
+				if (index >= input.length())
+					throw error("unterminated string");
+				char c = input.charAt(index++);
+				if (c == '"')
+					return builder.toString();
+				if (c != '\\') {
+					builder.append(c);
+					continue;
+				}
+				if (index >= input.length())
+					throw error("unterminated escape");
+				char escape = input.charAt(index++);
+				switch (escape) {
+				case 'n':
+					builder.append('\n');
+					break;
+				case 'r':
+					builder.append('\r');
+					break;
+				case 't':
+					builder.append('\t');
+					break;
+				case 'b':
+					builder.append('\b');
+					break;
+				case 'f':
+					builder.append('\f');
+					break;
+				case 'u':
+					if (index + 4 > input.length())
+						throw error("invalid unicode escape");
+					try {
+						builder.append((char) Integer.parseInt(
+								input.substring(index, index + 4), 16));
+					} catch (NumberFormatException ex) {
+						throw error("invalid unicode escape");
+					}
+					index += 4;
+					break;
+				default:
+					builder.append(escape);
+				}
+			}
+		}
+
+		private void skipWhitespace() {
+			while (index < input.length()
+					&& Character.isWhitespace(input.charAt(index)))
+				++index;
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at column "
+					+ (index + 1));
+		}
+	}
+}
@@ -0,0 +1,579 @@
+package net.citizensnpcs.properties;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import net.citizensnpcs.Citizens;
+import net.citizensnpcs.Settings;
+import net.citizensnpcs.properties.db.DatabaseStorage;
+import net.citizensnpcs.properties.properties.UtilityProperties;
+import net.citizensnpcs.resources.npclib.NPCSpawnQueue;
+import net.citizensnpcs.utils.Messaging;
+import net.citizensnpcs.utils.StringUtils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+
+/**
+ * Moves NPC records between storages and files one record at a time, so that
+ * memory use doesn't grow with the number of NPCs. Files hold one
+ * {@link StorageRecord} per line. Live storages are only read and written on
+ * the main thread, a batch per tick; files and new storages are handled on a
+ * background thread, with records passed between the two through a bounded
+ * queue. Writes made to a storage while it is migrated are tracked and copied
+ * again before switching.
+ */
+public class StorageTransfer {
+	private static final AtomicBoolean running = new AtomicBoolean();
+	private static ExecutorService executor;
+
+	/**
+	 * Writes every NPC to the given file.
+	 *
+	 * @return false if another transfer is running
+	 */
+	public static boolean export(final CommandSender sender, final File file) {
+		if (!running.compareAndSet(false, true))
+			return false;
+		PropertyManager.saveAllNPCs();
+		List<String> roots = Lists.newArrayList();
+		for (int UID : PropertyManager.getNPCProfiles().getIntegerKeys(null)) {
+			roots.add("" + UID);
+		}
+		final RecordReader reader = new RecordReader(
+				PropertyManager.getNPCProfiles(), roots);
+		reader.start();
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				Writer writer = null;
+				try {
+					file.getAbsoluteFile().getParentFile().mkdirs();
+					writer = new BufferedWriter(new OutputStreamWriter(
+							new FileOutputStream(file), UTF_8));
+					int count = 0;
+					StorageRecord record;
+					while ((record = reader.next()) != END) {
+						writer.write(record.toJSON());
+						writer.write('\n');
+						if (++count % PROGRESS_INTERVAL == 0)
+							report(sender, ChatColor.GRAY, "Exported " + count
+									+ "/" + reader.size() + " NPCs...");
+					}
+					writer.flush();
+					report(sender, ChatColor.GREEN, "Exported " + count
+							+ " NPCs to " + file.getName() + ".");
+				} catch (IOException ex) {
+					report(sender, ChatColor.RED, "Unable to export NPCs: "
+							+ ex.getMessage());
+				} finally {
+					reader.cancel();
+					Closeables.closeQuietly(writer);
+					running.set(false);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Adds every NPC in the given file, skipping UIDs that are already in
+	 * use, and spawns them once the import has finished.
+	 *
+	 * @return false if another transfer is running
+	 */
+	public static boolean importFrom(final CommandSender sender,
+			final File file) {
+		if (!running.compareAndSet(false, true))
+			return false;
+		final RecordWriter writer = new RecordWriter(sender,
+				PropertyManager.getNPCProfiles());
+		writer.start();
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				BufferedReader reader = null;
+				try {
+					reader = new BufferedReader(new InputStreamReader(
+							new FileInputStream(file), UTF_8));
+					int line = 0;
+					String json;
+					while ((json = reader.readLine()) != null) {
+						++line;
+						if (json.trim().isEmpty())
+							continue;
+						try {
+							writer.add(StorageRecord.parse(json));
+						} catch (IllegalArgumentException ex) {
+							throw new IOException("line " + line + ": "
+									+ ex.getMessage());
+						}
+					}
+				} catch (IOException ex) {
+					report(sender, ChatColor.RED, "Unable to import NPCs: "
+							+ ex.getMessage());
+				} finally {
+					Closeables.closeQuietly(reader);
+					// records added before an error are still imported.
+					writer.add(END);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Copies every record into a new storage of the given type and switches
+	 * to it once the copy has been saved. Roots written to while the copy is
+	 * running are copied again on the main thread just before switching.
+	 *
+	 * @return false if another transfer is running
+	 */
+	public static boolean migrate(final CommandSender sender, final String type) {
+		if (!running.compareAndSet(false, true))
+			return false;
+		PropertyManager.saveAllNPCs();
+		final Storage source = PropertyManager.getNPCProfiles();
+		final TrackedStorage tracked = new TrackedStorage(source);
+		PropertyManager.profiles = tracked;
+		final RecordReader reader = new RecordReader(source,
+				Lists.newArrayList(source.getKeys(null)));
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				boolean copied = false;
+				try {
+					final Storage target = PropertyManager.createStorage(type,
+							UtilityProperties.getConfig());
+					if (type.equalsIgnoreCase("database")
+							&& !(target instanceof DatabaseStorage)) {
+						report(sender, ChatColor.RED,
+								"Unable to open the database.");
+						return;
+					}
+					for (String key : target.getKeys(null)) {
+						target.removeKey(key);
+					}
+					sync(new Runnable() {
+						@Override
+						public void run() {
+							reader.start();
+						}
+					});
+					int count = 0;
+					StorageRecord record;
+					while ((record = reader.next()) != END) {
+						record.write(target);
+						if (++count % PROGRESS_INTERVAL == 0)
+							report(sender, ChatColor.GRAY, "Migrated " + count
+									+ "/" + reader.size() + " records...");
+					}
+					target.save();
+					copied = true;
+					final int migrated = count;
+					sync(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								PropertyManager.profiles = source;
+								int updated = tracked.copyChanges(target);
+								PropertyManager.setNPCProfiles(target);
+								UtilityProperties.getConfig().setString(
+										"storage.type", type.toLowerCase());
+								UtilityProperties.getConfig().save();
+								report(sender, ChatColor.GREEN, "Migrated "
+										+ migrated + " records to " + type
+										+ " storage, recopying " + updated
+										+ " changed during the copy.");
+							} finally {
+								running.set(false);
+							}
+						}
+					});
+				} catch (IOException ex) {
+					report(sender, ChatColor.RED, "Unable to migrate NPCs: "
+							+ ex.getMessage());
+				} catch (RuntimeException ex) {
+					Messaging.log("Error while migrating NPCs: " + ex,
+							Level.SEVERE);
+					report(sender, ChatColor.RED, "Unable to migrate NPCs: "
+							+ ex.getMessage());
+				} finally {
+					reader.cancel();
+					if (!copied) {
+						sync(new Runnable() {
+							@Override
+							public void run() {
+								PropertyManager.profiles = source;
+								running.set(false);
+							}
+						});
+					}
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Gets an export file by name, or null if the name would point outside
+	 * plugins/Citizens/exports.
+	 */
+	public static File getFile(String name) {
+		if (name.isEmpty() || name.contains("..") || name.contains("/")
+				|| name.contains("\\"))
+			return null;
+		return new File(DIRECTORY, name);
+	}
+
+	private static void report(final CommandSender sender,
+			final ChatColor colour, final String message) {
+		if (sender == null) {
+			Messaging.log(message);
+			return;
+		}
+		sync(new Runnable() {
+			@Override
+			public void run() {
+				sender.sendMessage(colour + message);
+			}
+		});
+	}
+
+	private static void sync(Runnable runnable) {
+		Bukkit.getScheduler().scheduleSyncDelayedTask(Citizens.plugin,
+				runnable);
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null || executor.isShutdown()) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable,
+							"Citizens storage transfer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Reads records from a live storage on the main thread and hands them to
+	 * the transfer thread, followed by {@link #END}. Roots are listed when the
+	 * transfer starts; records are read as the queue has room.
+	 */
+	private static class RecordReader implements Runnable {
+		private final BlockingQueue<StorageRecord> queue = new ArrayBlockingQueue<StorageRecord>(
+				QUEUE_SIZE);
+		private final Storage storage;
+		private final List<String> roots;
+		private volatile boolean cancelled;
+		private int next;
+		private int taskID = -1;
+
+		RecordReader(Storage storage, List<String> roots) {
+			this.storage = storage;
+			this.roots = roots;
+		}
+
+		// Called on the main thread.
+		void start() {
+			if (!cancelled)
+				taskID = Bukkit.getScheduler().scheduleSyncRepeatingTask(
+						Citizens.plugin, this, 0, 1);
+		}
+
+		@Override
+		public void run() {
+			if (!cancelled) {
+				for (int i = 0; i < BATCH_SIZE && next < roots.size()
+						&& queue.remainingCapacity() > 0; ++i) {
+					queue.add(StorageRecord.read(storage, roots.get(next++)));
+				}
+				if (next < roots.size() || !queue.offer(END))
+					return;
+			}
+			Bukkit.getScheduler().cancelTask(taskID);
+		}
+
+		// Stops reading; the task is cancelled on its next run.
+		void cancel() {
+			cancelled = true;
+		}
+
+		// Called on the transfer thread.
+		StorageRecord next() throws IOException {
+			try {
+				StorageRecord record = queue.poll(TIMEOUT, TimeUnit.SECONDS);
+				if (record == null)
+					throw new IOException("timed out reading NPCs");
+				return record;
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted");
+			}
+		}
+
+		int size() {
+			return roots.size();
+		}
+	}
+
+	/**
+	 * Adds records handed over by the transfer thread to a live storage on the
+	 * main thread, then saves it and spawns the new NPCs once {@link #END}
+	 * arrives.
+	 */
+	private static class RecordWriter implements Runnable {
+		private final BlockingQueue<StorageRecord> queue = new ArrayBlockingQueue<StorageRecord>(
+				QUEUE_SIZE);
+		private final CommandSender sender;
+		private final Storage storage;
+		private final List<Integer> imported = Lists.newArrayList();
+		private int skipped;
+		private int taskID = -1;
+
+		RecordWriter(CommandSender sender, Storage storage) {
+			this.sender = sender;
+			this.storage = storage;
+		}
+
+		// Called on the main thread.
+		void start() {
+			taskID = Bukkit.getScheduler().scheduleSyncRepeatingTask(
+					Citizens.plugin, this, 0, 1);
+		}
+
+		// Called on the transfer thread; waits while the queue is full.
+		void add(StorageRecord record) {
+			try {
+				queue.put(record);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			for (int i = 0; i < BATCH_SIZE; ++i) {
+				StorageRecord record = queue.poll();
+				if (record == null)
+					return;
+				if (record == END) {
+					finish();
+					return;
+				}
+				if (!StringUtils.isNumber(record.getRoot())
+						|| storage.keyExists(record.getRoot())) {
+					++skipped;
+					continue;
+				}
+				record.write(storage);
+				int UID = Integer.parseInt(record.getRoot());
+				PropertyRecord.invalidate(UID);
+				imported.add(UID);
+				if (imported.size() % PROGRESS_INTERVAL == 0)
+					report(sender, ChatColor.GRAY, "Imported "
+							+ imported.size() + " NPCs...");
+			}
+		}
+
+		private void finish() {
+			Bukkit.getScheduler().cancelTask(taskID);
+			try {
+				storage.save();
+				new NPCSpawnQueue(NPCSpawnQueue.parse(imported),
+						Settings.getInt("SpawnBatchSize"),
+						Settings.getBoolean("LazyChunkLoading"), null)
+						.start(Citizens.plugin);
+				report(sender, ChatColor.GREEN, "Imported " + imported.size()
+						+ " NPCs, skipped " + skipped
+						+ " whose IDs are in use.");
+			} finally {
+				running.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Stands in for the live storage while it is being migrated, passing
+	 * everything through and noting the roots that are written to.
+	 */
+	private static class TrackedStorage extends AbstractStorage {
+		private final Storage storage;
+		private final Set<String> changed = Collections
+				.synchronizedSet(new HashSet<String>());
+		private volatile boolean reloaded;
+
+		TrackedStorage(Storage storage) {
+			this.storage = storage;
+		}
+
+		/**
+		 * Copies the roots changed since the migration started into the
+		 * target, or every root if the storage was reloaded. Called on the
+		 * main thread.
+		 *
+		 * @return the number of roots copied
+		 */
+		int copyChanges(Storage target) {
+			Set<String> roots;
+			synchronized (changed) {
+				roots = new HashSet<String>(changed);
+			}
+			if (reloaded) {
+				roots.addAll(storage.getKeys(null));
+				roots.addAll(target.getKeys(null));
+			}
+			for (String root : roots) {
+				target.removeKey(root);
+				if (storage.keyExists(root))
+					StorageRecord.read(storage, root).write(target);
+			}
+			if (!roots.isEmpty())
+				target.save();
+			return roots.size();
+		}
+
+		private void changed(String key) {
+			int index = key.indexOf('.');
+			changed.add(index == -1 ? key : key.substring(0, index));
+		}
+
+		@Override
+		public void load() {
+			reloaded = true;
+			storage.load();
+		}
+
+		@Override
+		public void save() {
+			storage.save();
+		}
+
+		@Override
+		public void removeKey(String key) {
+			changed(key);
+			storage.removeKey(key);
+		}
+
+		@Override
+		public String getString(String key) {
+			return storage.getString(key);
+		}
+
+		@Override
+		public void setString(String key, String value) {
+			changed(key);
+			storage.setString(key, value);
+		}
+
+		@Override
+		public int getInt(String key) {
+			return storage.getInt(key);
+		}
+
+		@Override
+		public void setInt(String key, int value) {
+			changed(key);
+			storage.setInt(key, value);
+		}
+
+		@Override
+		public double getDouble(String key) {
+			return storage.getDouble(key);
+		}
+
+		@Override
+		public void setDouble(String key, double value) {
+			changed(key);
+			storage.setDouble(key, value);
+		}
+
+		@Override
+		public long getLong(String key) {
+			return storage.getLong(key);
+		}
+
+		@Override
+		public void setLong(String key, long value) {
+			changed(key);
+			storage.setLong(key, value);
+		}
+
+		@Override
+		public boolean getBoolean(String key) {
+			return storage.getBoolean(key);
+		}
+
+		@Override
+		public void setBoolean(String key, boolean value) {
+			changed(key);
+			storage.setBoolean(key, value);
+		}
+
+		@Override
+		public Object getRaw(String key) {
+			return storage.getRaw(key);
+		}
+
+		@Override
+		public void setRaw(String key, Object value) {
+			changed(key);
+			storage.setRaw(key, value);
+		}
+
+		@Override
+		public boolean keyExists(String key) {
+			return storage.keyExists(key);
+		}
+
+		@Override
+		public Collection<String> getKeys(String path) {
+			return storage.getKeys(path);
+		}
+
+		@Override
+		public List<Integer> getIntegerKeys(String path) {
+			return storage.getIntegerKeys(path);
+		}
+	}
+
+	// Marks the end of the records.
+	private static final StorageRecord END = new StorageRecord("",
+			Collections.<String, String> emptyMap());
+	private static final int BATCH_SIZE = 100;
+	private static final int QUEUE_SIZE = 1000;
+	private static final int TIMEOUT = 60;
+	private static final int PROGRESS_INTERVAL = 1000;
+	private static final String DIRECTORY = "plugins/Citizens/exports";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+}
@@ -0,0 +1,251 @@
+package net.citizensnpcs.properties;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+import net.citizensnpcs.utils.StringUtils;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+
+/**
+ * Reads and writes flat path to value maps as nested YAML mappings without
+ * building an intermediate object graph. Only the subset of YAML produced by
+ * Bukkit and by {@link #write(Map, Writer)} is supported; sequences are read
+ * back in the same "[a, b]" form that Bukkit's toString() produced.
+ */
+public class YAMLStream {
+	/**
+	 * Parses the YAML read from the given reader, setting every scalar value
+	 * in the tree under its dotted path.
+	 */
+	public static void read(Reader reader, SettingsTree tree) {
+		List<String> path = Lists.newArrayList();
+		List<String> sequence = null;
+		String key = null;
+		int skip = 0;
+		for (Event event : new Yaml().parse(reader)) {
+			if (skip > 0) {
+				// ignore anything nested inside a sequence.
+				if (event instanceof MappingStartEvent
+						|| event instanceof SequenceStartEvent)
+					++skip;
+				else if (event instanceof MappingEndEvent
+						|| event instanceof SequenceEndEvent)
+					--skip;
+				continue;
+			}
+			if (event instanceof MappingStartEvent) {
+				if (sequence != null) {
+					skip = 1;
+				} else if (key != null) {
+					path.add(key);
+					key = null;
+				}
+			} else if (event instanceof MappingEndEvent) {
+				if (!path.isEmpty())
+					path.remove(path.size() - 1);
+			} else if (event instanceof SequenceStartEvent) {
+				if (sequence != null)
+					skip = 1;
+				else
+					sequence = Lists.newArrayList();
+			} else if (event instanceof SequenceEndEvent) {
+				if (key != null)
+					set(tree, path, key, "[" + JOINER.join(sequence) + "]");
+				sequence = null;
+				key = null;
+			} else if (event instanceof ScalarEvent) {
+				String value = resolve((ScalarEvent) event);
+				if (sequence != null) {
+					sequence.add(value);
+				} else if (key == null) {
+					key = value;
+				} else {
+					if (value != null)
+						set(tree, path, key, value);
+					key = null;
+				}
+			} else if (event instanceof AliasEvent && key != null) {
+				key = null;
+			}
+		}
+	}
+
+	private static void set(SettingsTree tree, List<String> path, String key,
+			String value) {
+		if (key == null)
+			return;
+		String full = path.isEmpty() ? key : DOT_JOINER.join(path) + "."
+				+ key;
+		tree.set(full, value);
+	}
+
+	// Normalises plain booleans and nulls the way Bukkit's parser would have.
+	private static String resolve(ScalarEvent event) {
+		String value = event.getValue();
+		if (event.getStyle() != null)
+			return value;
+		Tag tag = RESOLVER.resolve(NodeId.scalar, value, true);
+		if (Tag.NULL.equals(tag))
+			return null;
+		if (Tag.BOOL.equals(tag))
+			return String.valueOf(TRUE.matcher(value).matches());
+		return value;
+	}
+
+	/**
+	 * Writes the non-empty values of the given map as nested YAML. The map
+	 * should be sorted with {@link #PATH_ORDER} so that each path's children
+	 * directly follow it; a path that has both a value and children is
+	 * written as a mapping.
+	 */
+	public static void write(Map<String, String> values, Writer writer)
+			throws IOException {
+		String[] previous = new String[0];
+		Iterator<Entry<String, String>> itr = values.entrySet().iterator();
+		Entry<String, String> next = advance(itr);
+		while (next != null) {
+			Entry<String, String> entry = next;
+			next = advance(itr);
+			if (next != null
+					&& next.getKey().startsWith(entry.getKey() + "."))
+				continue;
+			String[] current = entry.getKey().split("\\.");
+			int common = 0;
+			while (common < previous.length && common < current.length - 1
+					&& previous[common].equals(current[common]))
+				++common;
+			for (int i = common; i < current.length; ++i) {
+				indent(writer, i);
+				writer.write(quote(current[i]));
+				writer.write(':');
+				if (i == current.length - 1) {
+					writer.write(' ');
+					writer.write(quote(entry.getValue()));
+				}
+				writer.write('\n');
+			}
+			previous = current;
+		}
+		writer.flush();
+	}
+
+	// Skips over empty values and top-level numeric keys.
+	private static Entry<String, String> advance(
+			Iterator<Entry<String, String>> itr) {
+		while (itr.hasNext()) {
+			Entry<String, String> entry = itr.next();
+			if (entry.getValue() != null && !entry.getValue().isEmpty()
+					&& !StringUtils.isNumber(entry.getKey()))
+				return entry;
+		}
+		return null;
+	}
+
+	private static void indent(Writer writer, int depth) throws IOException {
+		for (int i = 0; i < depth; ++i) {
+			writer.write(INDENT);
+		}
+	}
+
+	private static String quote(String value) {
+		if (PLAIN.matcher(value).matches()) {
+			// keep the reader from turning these into booleans or nulls.
+			Tag tag = RESOLVER.resolve(NodeId.scalar, value, true);
+			if (!Tag.NULL.equals(tag) && !Tag.BOOL.equals(tag)
+					|| value.equals("true") || value.equals("false"))
+				return value;
+		}
+		StringBuilder builder = new StringBuilder(value.length() + 2);
+		boolean control = false;
+		for (int i = 0; i < value.length(); ++i) {
+			if (value.charAt(i) < ' ') {
+				control = true;
+				break;
+			}
+		}
+		if (!control) {
+			builder.append('\'');
+			builder.append(value.replace("'", "''"));
+			return builder.append('\'').toString();
+		}
+		builder.append('"');
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			default:
+				if (c < ' ')
+					builder.append(String.format("\\x%02x", (int) c));
+				else
+					builder.append(c);
+			}
+		}
+		return builder.append('"').toString();
+	}
+
+	/**
+	 * Orders dotted paths segment by segment, so that a path is always
+	 * directly followed by its children.
+	 */
+	public static final Comparator<String> PATH_ORDER = new Comparator<String>() {
+		@Override
+		public int compare(String o1, String o2) {
+			int length = Math.min(o1.length(), o2.length());
+			for (int i = 0; i < length; ++i) {
+				char c1 = o1.charAt(i), c2 = o2.charAt(i);
+				if (c1 == c2)
+					continue;
+				if (c1 == '.')
+					return -1;
+				if (c2 == '.')
+					return 1;
+				return c1 - c2;
+			}
+			return o1.length() - o2.length();
+		}
+	};
+
+	private static final String INDENT = "  ";
+	private static final Resolver RESOLVER = new Resolver();
+	private static final Joiner DOT_JOINER = Joiner.on('.');
+	private static final Joiner JOINER = Joiner.on(", ").useForNull("null");
+	private static final Pattern PLAIN = Pattern
+			.compile("^-?[A-Za-z0-9_][A-Za-z0-9_./+-]*$");
+	private static final Pattern TRUE = Pattern
+			.compile("^(?:y|Y|yes|Yes|YES|true|True|TRUE|on|On|ON)$");
+}
@@ -0,0 +1,26 @@
+package net.citizensnpcs.properties.codec;
+
+/**
+ * Converts a value to and from the string stored in a storage entry.
+ * 
+ * @see CodecCache
+ */
+public interface Codec<T> {
+	/**
+	 * @return the decoded value, or null if the string is missing or invalid
+	 */
+	public T decode(String raw);
+
+	public String encode(T value);
+
+	/**
+	 * Returns a copy of the value that callers are free to modify.
+	 */
+	public T copy(T value);
+
+	/**
+	 * Whether a previously decoded value can still be handed out, for example
+	 * whether the world it refers to is still loaded.
+	 */
+	public boolean isCacheable(T value);
+}
@@ -0,0 +1,70 @@
+package net.citizensnpcs.properties.codec;
+
+import java.util.Map;
+
+import net.citizensnpcs.properties.Storage;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Decodes each storage entry once. A cached value is reused for as long as
+ * the raw string in storage is unchanged, so writes made through any path
+ * invalidate it.
+ */
+public class CodecCache<T> {
+	private final Map<String, Entry<T>> cache = new MapMaker().softValues()
+			.makeMap();
+	private final Codec<T> codec;
+
+	public CodecCache(Codec<T> codec) {
+		this.codec = codec;
+	}
+
+	public Codec<T> getCodec() {
+		return codec;
+	}
+
+	public T get(Storage storage, String key) {
+		String raw = storage.getString(key);
+		Entry<T> entry = cache.get(key);
+		if (entry != null && entry.storage == storage && entry.raw.equals(raw)
+				&& codec.isCacheable(entry.value))
+			return codec.copy(entry.value);
+		T value = codec.decode(raw);
+		if (value == null || !codec.isCacheable(value)) {
+			cache.remove(key);
+			return value;
+		}
+		cache.put(key, new Entry<T>(storage, raw, value));
+		return codec.copy(value);
+	}
+
+	public void set(Storage storage, String key, T value) {
+		String raw = codec.encode(value);
+		storage.setString(key, raw);
+		if (value != null && codec.isCacheable(value)) {
+			cache.put(key, new Entry<T>(storage, raw, codec.copy(value)));
+		} else
+			cache.remove(key);
+	}
+
+	public void invalidate(String key) {
+		cache.remove(key);
+	}
+
+	public void clear() {
+		cache.clear();
+	}
+
+	private static class Entry<T> {
+		private final Storage storage;
+		private final String raw;
+		private final T value;
+
+		Entry(Storage storage, String raw, T value) {
+			this.storage = storage;
+			this.raw = raw;
+			this.value = value;
+		}
+	}
+}
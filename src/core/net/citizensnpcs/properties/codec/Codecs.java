@@ -0,0 +1,13 @@
+package net.citizensnpcs.properties.codec;
+
+import org.bukkit.Location;
+import org.bukkit.inventory.ItemStack;
+
+public class Codecs {
+	public static final CodecCache<Location> LOCATION = new CodecCache<Location>(
+			new LocationCodec(false));
+	public static final CodecCache<Location> WAYPOINT_LOCATION = new CodecCache<Location>(
+			new LocationCodec(true));
+	public static final CodecCache<ItemStack[]> INVENTORY = new CodecCache<ItemStack[]>(
+			new InventoryCodec());
+}
@@ -0,0 +1,91 @@
+package net.citizensnpcs.properties.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.citizensnpcs.utils.StringUtils;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Stores inventory contents as "id/amount/durability/data" entries, with runs
+ * of empty slots shortened to "AIR*count".
+ */
+public class InventoryCodec implements Codec<ItemStack[]> {
+	@Override
+	public ItemStack[] decode(String save) {
+		if (save.isEmpty()) {
+			return null;
+		}
+		List<ItemStack> array = new ArrayList<ItemStack>();
+		for (String s : save.split(",")) {
+			String[] split = s.split("/");
+			if (!split[0].contains("AIR") && !split[0].equals("0")) {
+				if (split.length == 4) {
+					ItemStack newStack = new ItemStack(
+							StringUtils.parse(split[0]),
+							StringUtils.parse(split[1]),
+							(short) StringUtils.parse(split[2]),
+							(byte) StringUtils.parse(split[3]));
+					newStack.setDurability((short) StringUtils.parse(split[2]));
+					array.add(newStack);
+				} else {
+					array.add(new ItemStack(StringUtils.parse(split[0]),
+							StringUtils.parse(split[1]), (short) 0,
+							(byte) StringUtils.parse(split[2])));
+				}
+			} else if (split[0].equals("AIR")) {
+				array.add(null);
+			} else {
+				int count = Integer.parseInt(split[0].split("\\*")[1]);
+				while (count != 0) {
+					array.add(null);
+					--count;
+				}
+			}
+		}
+		return array.toArray(new ItemStack[Math.max(array.size(),
+				INVENTORY_SIZE)]);
+	}
+
+	@Override
+	public String encode(ItemStack[] contents) {
+		StringBuilder save = new StringBuilder();
+		int count = 0;
+		for (ItemStack i : contents) {
+			if (i == null || i.getType() == Material.AIR) {
+				++count;
+			} else {
+				if (count > 0) {
+					save.append("AIR*" + count + ",");
+					count = 0;
+				}
+				save.append(i.getTypeId()).append("/").append(i.getAmount())
+						.append("/").append(i.getDurability()).append("/")
+						.append((i.getData() == null) ? 0 : i.getData()
+								.getData()).append(",");
+			}
+		}
+		if (count > 0) {
+			save.append("AIR*" + count + ",");
+		}
+		return save.toString();
+	}
+
+	@Override
+	public ItemStack[] copy(ItemStack[] value) {
+		ItemStack[] copy = new ItemStack[value.length];
+		for (int i = 0; i < value.length; ++i) {
+			copy[i] = value[i] == null ? null : value[i].clone();
+		}
+		return copy;
+	}
+
+	@Override
+	public boolean isCacheable(ItemStack[] value) {
+		return true;
+	}
+
+	private static final int INVENTORY_SIZE = 36;
+}
@@ -0,0 +1,52 @@
+package net.citizensnpcs.properties.codec;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+
+import com.google.common.base.Joiner;
+
+/**
+ * Stores a location as "world,x,y,z,yaw,pitch", or "world,x,y,z,pitch,yaw"
+ * for the older waypoint format.
+ */
+public class LocationCodec implements Codec<Location> {
+	private final boolean pitchFirst;
+
+	public LocationCodec(boolean pitchFirst) {
+		this.pitchFirst = pitchFirst;
+	}
+
+	@Override
+	public Location decode(String raw) {
+		String[] values = raw.split(",");
+		if (values.length != 6)
+			return null;
+		float first = Float.parseFloat(values[4]), second = Float
+				.parseFloat(values[5]);
+		return new Location(Bukkit.getServer().getWorld(values[0]),
+				Double.parseDouble(values[1]), Double.parseDouble(values[2]),
+				Double.parseDouble(values[3]), pitchFirst ? second : first,
+				pitchFirst ? first : second);
+	}
+
+	@Override
+	public String encode(Location loc) {
+		return JOINER.join(loc.getWorld().getName(), loc.getX(), loc.getY(),
+				loc.getZ(), pitchFirst ? loc.getPitch() : loc.getYaw(),
+				pitchFirst ? loc.getYaw() : loc.getPitch());
+	}
+
+	@Override
+	public Location copy(Location value) {
+		return value.clone();
+	}
+
+	@Override
+	public boolean isCacheable(Location value) {
+		return value.getWorld() != null
+				&& Bukkit.getServer().getWorld(value.getWorld().getName()) == value
+						.getWorld();
+	}
+
+	private static final Joiner JOINER = Joiner.on(",");
+}
@@ -0,0 +1,59 @@
+package net.citizensnpcs.properties.codec;
+
+/**
+ * Codecs for immutable values, stored in the same form as the matching
+ * Storage setters.
+ */
+public abstract class ScalarCodec<T> implements Codec<T> {
+	@Override
+	public T copy(T value) {
+		return value;
+	}
+
+	@Override
+	public String encode(T value) {
+		return value == null ? "" : value.toString();
+	}
+
+	@Override
+	public boolean isCacheable(T value) {
+		return true;
+	}
+
+	public static final ScalarCodec<String> STRING = new ScalarCodec<String>() {
+		@Override
+		public String decode(String raw) {
+			return raw == null || raw.isEmpty() ? null : raw;
+		}
+	};
+
+	public static final ScalarCodec<Boolean> BOOLEAN = new ScalarCodec<Boolean>() {
+		@Override
+		public Boolean decode(String raw) {
+			return raw == null || raw.isEmpty() ? null : Boolean
+					.parseBoolean(raw);
+		}
+	};
+
+	public static final ScalarCodec<Integer> INTEGER = new ScalarCodec<Integer>() {
+		@Override
+		public Integer decode(String raw) {
+			try {
+				return raw == null ? null : Integer.parseInt(raw);
+			} catch (NumberFormatException ex) {
+				return null;
+			}
+		}
+	};
+
+	public static final ScalarCodec<Double> DOUBLE = new ScalarCodec<Double>() {
+		@Override
+		public Double decode(String raw) {
+			try {
+				return raw == null ? null : Double.parseDouble(raw);
+			} catch (NumberFormatException ex) {
+				return null;
+			}
+		}
+	};
+}
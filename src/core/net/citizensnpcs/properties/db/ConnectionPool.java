@@ -0,0 +1,118 @@
+package net.citizensnpcs.properties.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.citizensnpcs.utils.Messaging;
+
+/**
+ * A small fixed-size pool of JDBC connections. Connections are opened lazily
+ * and validated before being handed out.
+ */
+public class ConnectionPool {
+	private final BlockingQueue<Connection> idle;
+	private final ConnectionInfo info;
+	private final int size;
+	private int opened;
+
+	public ConnectionPool(ConnectionInfo info, int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("pool size must be at least 1");
+		this.info = info;
+		this.size = size;
+		this.idle = new ArrayBlockingQueue<Connection>(size);
+	}
+
+	public Connection getConnection() throws SQLException {
+		Connection connection = idle.poll();
+		if (connection == null) {
+			synchronized (this) {
+				if (opened < size) {
+					connection = open();
+					++opened;
+					return connection;
+				}
+			}
+			try {
+				connection = idle.poll(BORROW_TIMEOUT, TimeUnit.SECONDS);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			if (connection == null)
+				throw new SQLException("timed out waiting for a connection");
+		}
+		if (!isValid(connection)) {
+			Messaging.log("Lost connection with database, reopening...");
+			close(connection);
+			try {
+				connection = open();
+			} catch (SQLException ex) {
+				synchronized (this) {
+					--opened;
+				}
+				throw ex;
+			}
+		}
+		return connection;
+	}
+
+	public void release(Connection connection) {
+		if (connection == null)
+			return;
+		try {
+			if (connection.isClosed()) {
+				synchronized (this) {
+					--opened;
+				}
+				return;
+			}
+			if (!connection.getAutoCommit())
+				connection.setAutoCommit(true);
+		} catch (SQLException ex) {
+		}
+		if (!idle.offer(connection)) {
+			close(connection);
+		}
+	}
+
+	public void close() {
+		Connection connection;
+		while ((connection = idle.poll()) != null) {
+			close(connection);
+		}
+		synchronized (this) {
+			opened = 0;
+		}
+	}
+
+	private Connection open() throws SQLException {
+		return DriverManager.getConnection(info.url, info.username,
+				info.password);
+	}
+
+	private boolean isValid(Connection connection) {
+		try {
+			if (connection.isClosed())
+				return false;
+			if (connection.getClass().getName().startsWith("org.sqlite"))
+				return true;
+			return connection.isValid(VALIDATION_TIMEOUT);
+		} catch (SQLException ex) {
+			return false;
+		}
+	}
+
+	private static void close(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException ex) {
+		}
+	}
+
+	private static final int BORROW_TIMEOUT = 10;
+	private static final int VALIDATION_TIMEOUT = 2;
+}
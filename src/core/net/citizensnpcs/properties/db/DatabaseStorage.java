@@ -2,188 +2,530 @@ package net.citizensnpcs.properties.db;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import net.citizensnpcs.properties.AbstractStorage;
 import net.citizensnpcs.utils.Messaging;
+import net.citizensnpcs.utils.StringUtils;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
-public abstract class DatabaseStorage extends AbstractStorage {
-	private final ConnectionInfo info;
-	private Connection connection;
+/**
+ * Stores NPC profiles in two tables: one row per NPC and one row per property
+ * path. Records are read through an in-memory cache and written back in a
+ * single batched transaction on save().
+ */
+public class DatabaseStorage extends AbstractStorage {
+	private final ConnectionPool pool;
+	private final Map<Integer, SortedMap<String, String>> cache = Maps
+			.newHashMap();
+	private final Set<Integer> uids = Sets.newTreeSet();
+	private final Map<Integer, Set<String>> dirty = Maps.newHashMap();
+	private final Set<Integer> deleted = Sets.newHashSet();
+	private final Set<Integer> created = Sets.newHashSet();
 
 	public DatabaseStorage(String driver, ConnectionInfo info)
 			throws ClassNotFoundException, SQLException {
-		this.info = info;
-		if (!loadedDrivers.contains(driver)) {
+		this(driver, info, DEFAULT_POOL_SIZE);
+	}
+
+	public DatabaseStorage(String driver, ConnectionInfo info, int poolSize)
+			throws ClassNotFoundException, SQLException {
+		if (driver != null && !driver.isEmpty()
+				&& !loadedDrivers.contains(driver)) {
 			Class.forName(driver);
 			loadedDrivers.add(driver);
 		}
-		this.connect();
+		this.pool = new ConnectionPool(info, poolSize);
+		createSchema();
+		load();
 	}
 
-	private void ensureConnection() throws SQLException {
-		if (this.connection.getClass().getName().startsWith("org.sqlite"))
-			return;
-
-		if (!this.connection.isValid(0)) {
-			Messaging.log("Lost connection with database, reopening...");
-			this.connect();
+	private void createSchema() throws SQLException {
+		if (!tableExists(NPC_TABLE)) {
+			performSQL("CREATE TABLE " + table(NPC_TABLE)
+					+ " (uid INTEGER NOT NULL, PRIMARY KEY (uid))");
+		}
+		if (!tableExists(PROPERTY_TABLE)) {
+			performSQL("CREATE TABLE " + table(PROPERTY_TABLE)
+					+ " (uid INTEGER NOT NULL, path VARCHAR(255) NOT NULL,"
+					+ " value TEXT, PRIMARY KEY (uid, path))");
 		}
 	}
 
-	private void connect() throws SQLException {
-		this.connection = DriverManager.getConnection(info.url, info.username,
-				info.password);
-	}
-
-	protected abstract void getTable(String key);
-
 	public boolean tableExists(String table) {
-		if (aliases.containsKey(table))
-			table = aliases.get(table);
+		table = table(table);
+		Connection connection = null;
+		ResultSet rs = null;
 		try {
-			this.ensureConnection();
+			connection = pool.getConnection();
 			DatabaseMetaData meta = connection.getMetaData();
-			ResultSet rs = meta.getTables(null, null, table, null);
+			rs = meta.getTables(null, null, table, null);
+			if (rs.next())
+				return true;
+			close(rs);
+			// some drivers store unquoted identifiers in upper case.
+			rs = meta.getTables(null, null, table.toUpperCase(), null);
 			return rs.next();
 		} catch (SQLException ex) {
 			throw new RuntimeException(ex);
+		} finally {
+			close(rs);
+			pool.release(connection);
 		}
 	}
 
 	public boolean columnExists(String table, String column) {
-		if (aliases.containsKey(table))
-			table = aliases.get(table);
+		table = table(table);
+		Connection connection = null;
+		ResultSet rs = null;
 		try {
-			this.ensureConnection();
+			connection = pool.getConnection();
 			DatabaseMetaData meta = connection.getMetaData();
-			ResultSet rs = meta.getColumns(null, null, table, column);
+			rs = meta.getColumns(null, null, table, column);
 			return rs.next();
 		} catch (SQLException ex) {
 			throw new RuntimeException(ex);
+		} finally {
+			close(rs);
+			pool.release(connection);
 		}
 	}
 
 	public void performSQL(String sql) throws SQLException {
-		this.connection.prepareStatement(sql).execute();
+		Connection connection = pool.getConnection();
+		PreparedStatement statement = null;
+		try {
+			statement = connection.prepareStatement(sql);
+			statement.execute();
+		} finally {
+			close(statement);
+			pool.release(connection);
+		}
+	}
+
+	public void close() {
+		save();
+		pool.close();
 	}
 
 	@Override
-	public void load() {
+	public synchronized void load() {
+		cache.clear();
+		uids.clear();
+		dirty.clear();
+		deleted.clear();
+		created.clear();
+		Connection connection = null;
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		try {
+			connection = pool.getConnection();
+			statement = connection.prepareStatement("SELECT uid FROM "
+					+ table(NPC_TABLE));
+			rs = statement.executeQuery();
+			while (rs.next()) {
+				uids.add(rs.getInt(1));
+			}
+		} catch (SQLException ex) {
+			Messaging.log("Unable to load database, error: " + ex.getMessage());
+		} finally {
+			close(rs);
+			close(statement);
+			pool.release(connection);
+		}
+		// global keys have no row in the NPC table, so read them up front.
+		SortedMap<String, String> global = new TreeMap<String, String>();
+		fetch(GLOBAL, global);
+		cache.put(GLOBAL, global);
 	}
 
 	@Override
 	public void save() {
+		List<Integer> toDelete, toCreate;
+		List<Object[]> toWrite = Lists.newArrayList();
+		synchronized (this) {
+			if (dirty.isEmpty() && deleted.isEmpty() && created.isEmpty())
+				return;
+			toDelete = new ArrayList<Integer>(deleted);
+			toCreate = new ArrayList<Integer>(created);
+			for (Entry<Integer, Set<String>> entry : dirty.entrySet()) {
+				SortedMap<String, String> record = cache.get(entry.getKey());
+				for (String path : entry.getValue()) {
+					toWrite.add(new Object[] { entry.getKey(), path,
+							record == null ? null : record.get(path) });
+				}
+			}
+			deleted.clear();
+			created.clear();
+			dirty.clear();
+		}
+		Connection connection = null;
 		try {
-			this.ensureConnection();
-			this.connection.commit();
+			connection = pool.getConnection();
+			connection.setAutoCommit(false);
+			write(connection, toDelete, toCreate, toWrite);
+			connection.commit();
 		} catch (SQLException ex) {
 			Messaging.log("Unable to save database, error: " + ex.getMessage());
+			rollback(connection);
+			requeue(toDelete, toCreate, toWrite);
+		} finally {
+			pool.release(connection);
 		}
 	}
 
+	private void write(Connection connection, List<Integer> toDelete,
+			List<Integer> toCreate, List<Object[]> toWrite) throws SQLException {
+		PreparedStatement removeNPC = null, removeProperties = null, addNPC = null, removeProperty = null, addProperty = null;
+		try {
+			removeNPC = connection.prepareStatement("DELETE FROM "
+					+ table(NPC_TABLE) + " WHERE uid = ?");
+			removeProperties = connection.prepareStatement("DELETE FROM "
+					+ table(PROPERTY_TABLE) + " WHERE uid = ?");
+			for (int uid : toDelete) {
+				removeNPC.setInt(1, uid);
+				removeNPC.addBatch();
+				removeProperties.setInt(1, uid);
+				removeProperties.addBatch();
+			}
+			if (toCreate.size() > 0) {
+				// delete first so that upserts work on every database, and so
+				// that a removed UID reused before saving starts out empty.
+				addNPC = connection.prepareStatement("INSERT INTO "
+						+ table(NPC_TABLE) + " (uid) VALUES (?)");
+				for (int uid : toCreate) {
+					removeNPC.setInt(1, uid);
+					removeNPC.addBatch();
+					removeProperties.setInt(1, uid);
+					removeProperties.addBatch();
+					addNPC.setInt(1, uid);
+					addNPC.addBatch();
+				}
+			}
+			removeNPC.executeBatch();
+			removeProperties.executeBatch();
+			if (addNPC != null)
+				addNPC.executeBatch();
+
+			removeProperty = connection.prepareStatement("DELETE FROM "
+					+ table(PROPERTY_TABLE) + " WHERE uid = ? AND path = ?");
+			addProperty = connection.prepareStatement("INSERT INTO "
+					+ table(PROPERTY_TABLE)
+					+ " (uid, path, value) VALUES (?, ?, ?)");
+			int batched = 0;
+			for (Object[] row : toWrite) {
+				removeProperty.setInt(1, (Integer) row[0]);
+				removeProperty.setString(2, (String) row[1]);
+				removeProperty.addBatch();
+				if (row[2] != null) {
+					addProperty.setInt(1, (Integer) row[0]);
+					addProperty.setString(2, (String) row[1]);
+					addProperty.setString(3, (String) row[2]);
+					addProperty.addBatch();
+				}
+				if (++batched % BATCH_SIZE == 0) {
+					removeProperty.executeBatch();
+					addProperty.executeBatch();
+				}
+			}
+			removeProperty.executeBatch();
+			addProperty.executeBatch();
+		} finally {
+			close(removeNPC);
+			close(removeProperties);
+			close(addNPC);
+			close(removeProperty);
+			close(addProperty);
+		}
+	}
+
+	private synchronized void requeue(List<Integer> toDelete,
+			List<Integer> toCreate, List<Object[]> toWrite) {
+		deleted.addAll(toDelete);
+		for (int uid : toCreate) {
+			if (uids.contains(uid))
+				created.add(uid);
+		}
+		for (Object[] row : toWrite) {
+			markDirty((Integer) row[0], (String) row[1]);
+		}
+	}
+
+	private SortedMap<String, String> getRecord(int uid) {
+		SortedMap<String, String> record = cache.get(uid);
+		if (record != null)
+			return record;
+		record = new TreeMap<String, String>();
+		if (uids.contains(uid) && !created.contains(uid)) {
+			fetch(uid, record);
+		}
+		cache.put(uid, record);
+		return record;
+	}
+
+	private void fetch(int uid, SortedMap<String, String> record) {
+		Connection connection = null;
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		try {
+			connection = pool.getConnection();
+			statement = connection.prepareStatement("SELECT path, value FROM "
+					+ table(PROPERTY_TABLE) + " WHERE uid = ?");
+			statement.setInt(1, uid);
+			rs = statement.executeQuery();
+			while (rs.next()) {
+				record.put(rs.getString(1), rs.getString(2));
+			}
+		} catch (SQLException ex) {
+			Messaging.log("Unable to read NPC " + uid + " from database, error: "
+					+ ex.getMessage());
+		} finally {
+			close(rs);
+			close(statement);
+			pool.release(connection);
+		}
+	}
+
+	private void markDirty(int uid, String path) {
+		Set<String> paths = dirty.get(uid);
+		if (paths == null) {
+			paths = Sets.newHashSet();
+			dirty.put(uid, paths);
+		}
+		paths.add(path);
+	}
+
+	private synchronized String get(String key) {
+		int uid = getUID(key);
+		if (uid != GLOBAL && !uids.contains(uid))
+			return null;
+		return getRecord(uid).get(getPath(key, uid));
+	}
+
+	private synchronized void set(String key, String value) {
+		int uid = getUID(key);
+		String path = getPath(key, uid);
+		if (path.isEmpty())
+			return;
+		if (uid != GLOBAL && uids.add(uid)) {
+			deleted.remove(uid);
+			created.add(uid);
+		}
+		getRecord(uid).put(path, value);
+		markDirty(uid, path);
+	}
+
 	@Override
-	public void removeKey(String key) {
-		// TODO Auto-generated method stub
+	public synchronized void removeKey(String key) {
+		int uid = getUID(key);
+		String path = getPath(key, uid);
+		if (path.isEmpty() && uid != GLOBAL) {
+			if (uids.remove(uid)) {
+				created.remove(uid);
+				deleted.add(uid);
+			}
+			cache.remove(uid);
+			dirty.remove(uid);
+			return;
+		}
+		SortedMap<String, String> record = getRecord(uid);
+		List<String> removed = Lists.newArrayList();
+		if (record.containsKey(path))
+			removed.add(path);
+		removed.addAll(children(record, path).keySet());
+		for (String child : removed) {
+			record.remove(child);
+			markDirty(uid, child);
+		}
+	}
+
+	private boolean valueExists(String key) {
+		String value = get(key);
+		return value != null && !value.isEmpty();
 	}
 
 	@Override
 	public String getString(String key) {
-		// TODO Auto-generated method stub
-		return null;
+		return valueExists(key) ? get(key) : "";
 	}
 
 	@Override
 	public void setString(String key, String value) {
-		// TODO Auto-generated method stub
-
+		set(key, value);
 	}
 
 	@Override
 	public int getInt(String key) {
-		// TODO Auto-generated method stub
-		return 0;
+		return valueExists(key) ? Integer.parseInt(get(key)) : 0;
 	}
 
 	@Override
 	public void setInt(String key, int value) {
-		// TODO Auto-generated method stub
-
+		set(key, String.valueOf(value));
 	}
 
 	@Override
 	public double getDouble(String key) {
-		// TODO Auto-generated method stub
-		return 0;
+		return valueExists(key) ? Double.parseDouble(get(key)) : 0;
 	}
 
 	@Override
 	public void setDouble(String key, double value) {
-		// TODO Auto-generated method stub
-
+		set(key, String.valueOf(value));
 	}
 
 	@Override
 	public long getLong(String key) {
-		// TODO Auto-generated method stub
-		return 0;
+		return valueExists(key) ? Long.parseLong(get(key)) : 0;
 	}
 
 	@Override
 	public void setLong(String key, long value) {
-		// TODO Auto-generated method stub
-
+		set(key, String.valueOf(value));
 	}
 
 	@Override
 	public boolean getBoolean(String key) {
-		// TODO Auto-generated method stub
-		return false;
+		return valueExists(key) && Boolean.parseBoolean(get(key));
 	}
 
 	@Override
 	public void setBoolean(String key, boolean value) {
-		// TODO Auto-generated method stub
-
+		set(key, String.valueOf(value));
 	}
 
 	@Override
-	public Object getRaw(String string) {
-		// TODO Auto-generated method stub
-		return null;
+	public Object getRaw(String key) {
+		return get(key);
 	}
 
 	@Override
-	public void setRaw(String path, Object value) {
-		// TODO Auto-generated method stub
-
+	public void setRaw(String key, Object value) {
+		if (value == null) {
+			removeKey(key);
+		} else {
+			set(key, value.toString());
+		}
 	}
 
 	@Override
-	public boolean keyExists(String path) {
-		// TODO Auto-generated method stub
-		return false;
+	public synchronized boolean keyExists(String key) {
+		int uid = getUID(key);
+		String path = getPath(key, uid);
+		if (uid != GLOBAL && !uids.contains(uid))
+			return false;
+		if (path.isEmpty())
+			return true;
+		SortedMap<String, String> record = getRecord(uid);
+		return record.containsKey(path) || !children(record, path).isEmpty();
 	}
 
 	@Override
-	public Collection<String> getKeys(String string) {
-		// TODO Auto-generated method stub
-		return null;
+	public synchronized Collection<String> getKeys(String key) {
+		if (key == null || key.isEmpty()) {
+			Set<String> keys = Sets.newLinkedHashSet();
+			for (int uid : uids) {
+				keys.add(Integer.toString(uid));
+			}
+			keys.addAll(getChildKeys(getRecord(GLOBAL), ""));
+			return keys;
+		}
+		int uid = getUID(key);
+		if (uid != GLOBAL && !uids.contains(uid))
+			return Collections.emptyList();
+		return getChildKeys(getRecord(uid), getPath(key, uid));
 	}
 
 	@Override
-	public List<Integer> getIntegerKeys(String string) {
-		// TODO Auto-generated method stub
-		return null;
+	public List<Integer> getIntegerKeys(String key) {
+		List<Integer> ret = new ArrayList<Integer>();
+		for (String string : getKeys(key)) {
+			if (StringUtils.isNumber(string) && string.length() <= 9)
+				ret.add(Integer.parseInt(string));
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	private static Set<String> getChildKeys(SortedMap<String, String> record,
+			String path) {
+		Set<String> keys = Sets.newLinkedHashSet();
+		SortedMap<String, String> children = path.isEmpty() ? record
+				: children(record, path);
+		int offset = path.isEmpty() ? 0 : path.length() + 1;
+		for (String child : children.keySet()) {
+			int index = child.indexOf('.', offset);
+			keys.add(child.substring(offset, index == -1 ? child.length()
+					: index));
+		}
+		return keys;
+	}
+
+	// '/' is the character after '.', so this spans every "path.*" key.
+	private static SortedMap<String, String> children(
+			SortedMap<String, String> record, String path) {
+		return record.subMap(path + ".", path + "/");
+	}
+
+	private static int getUID(String key) {
+		int index = key.indexOf('.');
+		String root = index == -1 ? key : key.substring(0, index);
+		if (!StringUtils.isNumber(root) || root.length() > 9)
+			return GLOBAL;
+		return Integer.parseInt(root);
+	}
+
+	private static String getPath(String key, int uid) {
+		if (uid == GLOBAL)
+			return key;
+		int index = key.indexOf('.');
+		return index == -1 ? "" : key.substring(index + 1);
+	}
+
+	private static String table(String table) {
+		return aliases.containsKey(table) ? aliases.get(table) : table;
+	}
+
+	private static void rollback(Connection connection) {
+		if (connection == null)
+			return;
+		try {
+			connection.rollback();
+		} catch (SQLException ex) {
+		}
+	}
+
+	private static void close(Statement statement) {
+		if (statement == null)
+			return;
+		try {
+			statement.close();
+		} catch (SQLException ex) {
+		}
+	}
+
+	private static void close(ResultSet rs) {
+		if (rs == null)
+			return;
+		try {
+			rs.close();
+		} catch (SQLException ex) {
+		}
 	}
 
 	public static void registerTableAlias(String alias, String table) {
@@ -192,6 +534,11 @@ public abstract class DatabaseStorage extends AbstractStorage {
 		aliases.put(alias, table);
 	}
 
+	private static final int BATCH_SIZE = 500;
+	private static final int DEFAULT_POOL_SIZE = 3;
+	private static final int GLOBAL = -1;
+	private static final String NPC_TABLE = "npcs";
+	private static final String PROPERTY_TABLE = "npc_properties";
 	private static final Set<String> loadedDrivers = Sets.newHashSet();
 	private static final Map<String, String> aliases = Maps.newHashMap();
 }
@@ -6,7 +6,8 @@ import com.google.common.collect.Maps;
 
 public enum DatabaseType {
 	MYSQL("com.mysql.jdbc.Driver", "mysql"),
-	SQLITE("", "sqlite");
+	SQLITE("org.sqlite.JDBC", "sqlite"),
+	H2("org.h2.Driver", "h2");
 	private final String driver;
 	private final String[] aliases;
 
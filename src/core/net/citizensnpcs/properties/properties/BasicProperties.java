@@ -13,128 +13,73 @@ import net.citizensnpcs.npcdata.NPCData;
 import net.citizensnpcs.npcdata.NPCDataManager;
 import net.citizensnpcs.properties.Node;
 import net.citizensnpcs.properties.Properties;
+import net.citizensnpcs.properties.Property;
 import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.properties.PropertySchema;
+import net.citizensnpcs.properties.codec.Codecs;
+import net.citizensnpcs.properties.codec.ScalarCodec;
 import net.citizensnpcs.resources.npclib.HumanNPC;
+import net.citizensnpcs.resources.npclib.NPCSpawnDescriptor;
 import net.citizensnpcs.utils.LocationUtils;
 import net.citizensnpcs.utils.Messaging;
-import net.citizensnpcs.utils.StringUtils;
 import net.citizensnpcs.waypoints.Waypoint;
 import net.citizensnpcs.waypoints.WaypointModifier;
 import net.citizensnpcs.waypoints.WaypointModifierType;
 
-import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
-import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.craftbukkit.inventory.CraftInventoryPlayer;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.PlayerInventory;
 
 import com.google.common.base.Joiner;
-import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 
 public class BasicProperties extends PropertyManager implements Properties {
     public void saveName(int UID, String npcName) {
-        profiles.setString(UID + name, npcName);
+        name.set(UID, npcName);
     }
 
     public String getName(int UID) {
-        return profiles.getString(UID + name);
+        return name.get(UID);
     }
 
     public Location getLocation(int UID) {
-        String[] values = profiles.getString(UID + location).split(",");
-        if (values.length != 6) {
+        Location loc = location.get(UID);
+        if (loc == null) {
+            String[] values = profiles.getString(location.getKey(UID)).split(",");
             if (values[0].isEmpty()) {
                 Messaging.log("Missing location for " + UID);
             } else
                 Messaging.log("Invalid location length. Length: " + values.length);
-            return null;
-        } else {
-            return new Location(Bukkit.getServer().getWorld(values[0]), Double.parseDouble(values[1]),
-                    Double.parseDouble(values[2]), Double.parseDouble(values[3]), Float.parseFloat(values[4]),
-                    Float.parseFloat(values[5]));
         }
+        return loc;
     }
 
     public void saveLocation(Location loc, int UID) {
-        String locale = loc.getWorld().getName() + "," + loc.getX() + "," + loc.getY() + "," + loc.getZ() + ","
-                + loc.getYaw() + "," + loc.getPitch();
-        profiles.setString(UID + location, locale);
+        location.set(UID, loc);
     }
 
     private void saveInventory(int UID, PlayerInventory inv) {
-        StringBuilder save = new StringBuilder();
-        int count = 0;
-        for (ItemStack i : inv.getContents()) {
-            if (i == null || i.getType() == Material.AIR) {
-                ++count;
-            } else {
-                if (count > 0) {
-                    save.append("AIR*" + count + ",");
-                    count = 0;
-                }
-                save.append(i.getTypeId()).append("/").append(i.getAmount()).append("/").append(i.getDurability()).append("/")
-                        .append((i.getData() == null) ? 0 : i.getData().getData()).append(",");
-            }
-        }
-        if (count > 0) {
-            save.append("AIR*" + count + ",");
-            count = 0;
-        }
-        profiles.setString(UID + inventory, save.toString());
+        inventory.set(UID, inv.getContents());
     }
 
-    private PlayerInventory getInventory(int UID) {
-        String save = profiles.getString(UID + inventory);
-        if (save.isEmpty()) {
-            return null;
-        }
-        List<ItemStack> array = new ArrayList<ItemStack>();
-        for (String s : save.split(",")) {
-            String[] split = s.split("/");
-            if (!split[0].contains("AIR") && !split[0].equals("0")) 
-            {
-                if(split.length == 4)
-            	{
-            		ItemStack newStack = new ItemStack(StringUtils.parse(split[0]), StringUtils.parse(split[1]), (short) StringUtils.parse(split[2]),
-                            (byte) StringUtils.parse(split[3]));
-            		newStack.setDurability((short) StringUtils.parse(split[2]));
-            		array.add(newStack);
-            	}
-            	else
-            	{
-            		array.add(new ItemStack(StringUtils.parse(split[0]), StringUtils.parse(split[1]), (short) 0, (byte) StringUtils.parse(split[2])));
-            	}
-            } else {
-                if (split[0].equals("AIR")) {
-                    array.add(null);
-                } else {
-                    int count = Integer.parseInt(split[0].split("\\*")[1]);
-                    while (count != 0) {
-                        array.add(null);
-                        --count;
-                    }
-
-                }
-            }
-        }
-        PlayerInventory inv = new CraftInventoryPlayer(new net.minecraft.server.PlayerInventory(null));
-        ItemStack[] stacks = inv.getContents();
-        inv.setContents(array.toArray(stacks));
-        return inv;
+    private ItemStack[] getInventory(int UID) {
+        return inventory.get(UID);
     }
 
     // Gets a map of items
     public List<ItemData> getItems(int UID) {
-        List<ItemData> items = Lists.newArrayList();
-        String current = profiles.getString(UID + BasicProperties.items);
+        String current = BasicProperties.items.get(UID);
         if (current.isEmpty()) {
-            current = "0:0,0:0,0:0,0:0,0:0,";
-            profiles.setString(UID + BasicProperties.items, current);
+            current = DEFAULT_ITEMS;
+            BasicProperties.items.set(UID, current);
         }
+        return parseItems(current);
+    }
+
+    private static List<ItemData> parseItems(String current) {
+        List<ItemData> items = Lists.newArrayList();
         for (String s : current.split(",")) {
             if (!s.contains(":")) {
                 s += ":0";
@@ -151,27 +96,37 @@ public class BasicProperties extends PropertyManager implements Properties {
             short durability = items.get(i).getDurability();
             temp.append(items.get(i).getID() + ":" + (durability == -1 ? 0 : durability) + ",");
         }
-        profiles.setString(UID + BasicProperties.items, temp.toString());
+        BasicProperties.items.set(UID, temp.toString());
     }
 
     public ChatColor getColour(int UID) {
-        if (Strings.isNullOrEmpty(profiles.getString(UID + color))) {
-            profiles.setInt(UID + color, 0xF);
+        String current = color.get(UID);
+        if (current.isEmpty()) {
+            color.set(UID, Integer.toString(0xF));
             return ChatColor.WHITE;
         }
+        return parseColour(current);
+    }
+
+    private static ChatColor parseColour(String colour) {
+        if (colour.isEmpty())
+            return ChatColor.WHITE;
         try {
-            return ChatColor.getByChar((char) ('0' + Integer.parseInt(profiles.getString(UID + color), 16)));
+            return ChatColor.getByChar((char) ('0' + Integer.parseInt(colour, 16)));
         } catch (NumberFormatException ex) {
-            return ChatColor.getByChar(profiles.getString(UID + color).charAt(0));
+            return ChatColor.getByChar(colour.charAt(0));
         }
     }
 
     private void saveColour(int UID, ChatColor colour) {
-        profiles.setString(UID + color, colour == null ? "" + ChatColor.WHITE.getChar() : "" + colour.getChar());
+        color.set(UID, colour == null ? "" + ChatColor.WHITE.getChar() : "" + colour.getChar());
     }
 
     public Deque<String> getText(int UID) {
-        String current = profiles.getString(UID + text);
+        return parseText(text.get(UID));
+    }
+
+    private static Deque<String> parseText(String current) {
         if (!current.isEmpty()) {
             Deque<String> texts = new ArrayDeque<String>(Arrays.asList(current.split(";")));
             return texts;
@@ -183,39 +138,39 @@ public class BasicProperties extends PropertyManager implements Properties {
         if (texts == null) {
             return;
         }
-        profiles.setString(UID + text, Joiner.on(";").skipNulls().join(texts));
+        text.set(UID, Joiner.on(";").skipNulls().join(texts));
     }
 
     public boolean isTalk(int UID) {
-        return profiles.getBoolean(UID + talk, true);
+        return talk.get(UID);
     }
 
-    private void saveTalk(int UID, boolean talk) {
-        profiles.setBoolean(UID + BasicProperties.talk, talk);
+    private void saveTalk(int UID, boolean value) {
+        talk.set(UID, value);
     }
 
     public boolean isLookWhenClose(int UID) {
-        return profiles.getBoolean(UID + lookWhenClose, Settings.getBoolean("DefaultLookAt"));
+        return lookWhenClose.get(UID, Settings.getBoolean("DefaultLookAt"));
     }
 
     public void saveLookWhenClose(int UID, boolean value) {
-        profiles.setBoolean(UID + lookWhenClose, value);
+        lookWhenClose.set(UID, value);
     }
 
     public boolean isTalkWhenClose(int UID) {
-        return profiles.getBoolean(UID + talkWhenClose, Settings.getBoolean("DefaultTalkClose"));
+        return talkWhenClose.get(UID, Settings.getBoolean("DefaultTalkClose"));
     }
 
     public void saveTalkWhenClose(int UID, boolean value) {
-        profiles.setBoolean(UID + talkWhenClose, value);
+        talkWhenClose.set(UID, value);
     }
 
     public String getOwner(int UID) {
-        return profiles.getString(UID + owner);
+        return owner.get(UID);
     }
 
     public void saveOwner(int UID, String name) {
-        profiles.setString(UID + owner, name);
+        owner.set(UID, name);
     }
 
     private void saveWaypoints(int UID, List<Waypoint> list) {
@@ -299,8 +254,8 @@ public class BasicProperties extends PropertyManager implements Properties {
         saveOwner(UID, npcdata.getOwner());
     }
 
-    private void saveBalance(int UID, double balance) {
-        profiles.setDouble(UID + ".basic.balance", balance);
+    private void saveBalance(int UID, double value) {
+        balance.set(UID, value);
     }
 
     private double getBalance(int UID) {
@@ -309,7 +264,7 @@ public class BasicProperties extends PropertyManager implements Properties {
             profiles.removeKey(UID + ".trader.balance");
             return previous;
         }
-        return profiles.getDouble(UID + ".basic.balance");
+        return balance.get(UID);
     }
 
     @Override
@@ -331,8 +286,60 @@ public class BasicProperties extends PropertyManager implements Properties {
         npc.setBalance(getBalance(npc.getUID()));
 
         NPCDataManager.addItems(npc, npcdata.getItems());
-        if (getInventory(npc.getUID()) != null) {
-            npc.getInventory().setContents(getInventory(npc.getUID()).getContents());
+        ItemStack[] contents = getInventory(UID);
+        if (contents != null) {
+            npc.getInventory().setContents(contents);
+        }
+        saveState(npc);
+    }
+
+    /**
+     * Parses the basic properties of an NPC without writing any defaults back,
+     * so that it is safe to call from multiple threads at once.
+     * 
+     * @return the descriptor, or null if the NPC has no valid location
+     */
+    public NPCSpawnDescriptor getSpawnDescriptor(int UID) {
+        String[] values = profiles.getString(location.getKey(UID)).split(",");
+        if (values.length != 6)
+            return null;
+        try {
+            String current = items.read(profiles, UID, DEFAULT_ITEMS);
+            String colour = color.read(profiles, UID, "");
+            return new NPCSpawnDescriptor(UID, owner.read(profiles, UID, ""), name.read(profiles, UID, ""),
+                    parseColour(colour), values[0], Double.parseDouble(values[1]), Double.parseDouble(values[2]),
+                    Double.parseDouble(values[3]), Float.parseFloat(values[4]), Float.parseFloat(values[5]),
+                    parseItems(current), parseText(text.read(profiles, UID, "")), inventory.read(profiles, UID, null),
+                    talk.read(profiles, UID, true), lookWhenClose.read(profiles, UID,
+                            Settings.getBoolean("DefaultLookAt")), talkWhenClose.read(profiles, UID,
+                            Settings.getBoolean("DefaultTalkClose")));
+        } catch (RuntimeException ex) {
+            Messaging.log("Unable to parse NPC " + UID + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    // Loads the NPC from an already parsed descriptor, only reading the
+    // properties that aren't part of it.
+    public void loadState(HumanNPC npc, NPCSpawnDescriptor descriptor) {
+        NPCData npcdata = npc.getNPCData();
+
+        npcdata.setTalk(descriptor.isTalk());
+        npcdata.setName(descriptor.getName());
+        npcdata.setLocation(descriptor.getLocation());
+        npcdata.setColour(descriptor.getColour());
+        npcdata.setItems(descriptor.getItems());
+        npcdata.setTexts(descriptor.getText());
+        npcdata.setLookClose(descriptor.isLookClose());
+        npcdata.setTalkClose(descriptor.isTalkClose());
+        npcdata.setOwner(descriptor.getOwner());
+        npc.getWaypoints().setPoints(getWaypoints(npc.getUID(), npc.getWorld()));
+        npc.setBalance(getBalance(npc.getUID()));
+
+        NPCDataManager.addItems(npc, npcdata.getItems());
+        ItemStack[] contents = descriptor.getInventory();
+        if (contents != null) {
+            npc.getInventory().setContents(contents);
         }
         saveState(npc);
     }
@@ -367,15 +374,18 @@ public class BasicProperties extends PropertyManager implements Properties {
             "basic.inventory", "basic.location", "basic.look-when-close", "basic.talk-when-close", "basic.waypoints",
             "basic.owner", "basic.talk", "basic.text");
 
-    private static final String name = ".basic.name";
-    private static final String color = ".basic.color";
-    private static final String items = ".basic.items";
-    private static final String inventory = ".basic.inventory";
-    private static final String location = ".basic.location";
-    private static final String lookWhenClose = ".basic.look-when-close";
-    private static final String talkWhenClose = ".basic.talk-when-close";
+    private static final PropertySchema schema = new PropertySchema("basic");
+    private static final Property<String> name = schema.add("name", ScalarCodec.STRING, "");
+    private static final Property<String> color = schema.add("color", ScalarCodec.STRING, "");
+    private static final Property<String> items = schema.add("items", ScalarCodec.STRING, "");
+    private static final Property<ItemStack[]> inventory = schema.add("inventory", Codecs.INVENTORY.getCodec(), null);
+    private static final Property<Location> location = schema.add("location", Codecs.LOCATION.getCodec(), null);
+    private static final Property<Boolean> lookWhenClose = schema.add("look-when-close", ScalarCodec.BOOLEAN, null);
+    private static final Property<Boolean> talkWhenClose = schema.add("talk-when-close", ScalarCodec.BOOLEAN, null);
+    private static final Property<String> owner = schema.add("owner", ScalarCodec.STRING, "");
+    private static final Property<String> text = schema.add("text", ScalarCodec.STRING, "");
+    private static final Property<Boolean> talk = schema.add("talk", ScalarCodec.BOOLEAN, true);
+    private static final Property<Double> balance = schema.add("balance", ScalarCodec.DOUBLE, 0D);
     private static final String waypoints = ".basic.waypoints";
-    private static final String owner = ".basic.owner";
-    private static final String text = ".basic.text";
-    private static final String talk = ".basic.talk";
+    private static final String DEFAULT_ITEMS = "0:0,0:0,0:0,0:0,0:0,";
 }
\ No newline at end of file
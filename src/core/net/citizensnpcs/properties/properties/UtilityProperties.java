@@ -7,7 +7,6 @@ import java.util.Random;
 import net.citizensnpcs.Settings;
 import net.citizensnpcs.properties.ConfigurationHandler;
 import net.citizensnpcs.properties.Storage;
-import net.citizensnpcs.resources.npclib.HumanNPC;
 import net.citizensnpcs.resources.npclib.NPCManager;
 
 import org.bukkit.Material;
@@ -59,13 +58,7 @@ public class UtilityProperties {
 	}
 
 	public static int getNPCCount(String name) {
-		int count = 0;
-		for (HumanNPC npc : NPCManager.getList().values()) {
-			if (npc.getOwner().equals(name)) {
-				count++;
-			}
-		}
-		return count;
+		return NPCManager.count(name);
 	}
 
 	// returns whether the given item ID is usable as a tool
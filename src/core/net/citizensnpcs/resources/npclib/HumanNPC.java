@@ -159,11 +159,17 @@ public class HumanNPC extends NPC {
     }
 
     public void registerType(String type) {
-        this.types.put(type, NPCTypeManager.getType(type).getInstance());
+        CitizensNPC instance = NPCTypeManager.getType(type).getInstance();
+        CitizensNPC previous = this.types.put(type, instance);
+        if (previous != null)
+            previous.onRemove(this);
+        instance.onAdd(this);
     }
 
     public void removeType(String type) {
-        this.types.remove(type);
+        CitizensNPC removed = this.types.remove(type);
+        if (removed != null)
+            removed.onRemove(this);
         PropertyManager.save(type, this);
     }
 
@@ -177,6 +183,7 @@ public class HumanNPC extends NPC {
 
     public void setNPCData(NPCData npcdata) {
         this.npcdata = npcdata;
+        NPCManager.getAttributes().update(this);
     }
 
     public void setPaused(boolean paused) {
@@ -0,0 +1,95 @@
+package net.citizensnpcs.resources.npclib;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import net.citizensnpcs.misc.NPCLocation;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Tracks NPCs that are known but not spawned, keyed by the chunk they are in.
+ * Only accessed from the main thread.
+ */
+public class NPCChunkIndex {
+    private final Map<String, Map<Long, List<NPCLocation>>> worlds = Maps.newHashMap();
+    private final Map<Integer, NPCLocation> locations = Maps.newHashMap();
+
+    public void add(NPCLocation loc) {
+        remove(loc.getUID());
+        Map<Long, List<NPCLocation>> chunks = worlds.get(loc.getWorldName());
+        if (chunks == null) {
+            chunks = Maps.newHashMap();
+            worlds.put(loc.getWorldName(), chunks);
+        }
+        long key = toKey(loc.getChunkX(), loc.getChunkZ());
+        List<NPCLocation> npcs = chunks.get(key);
+        if (npcs == null) {
+            npcs = Lists.newArrayListWithCapacity(2);
+            chunks.put(key, npcs);
+        }
+        npcs.add(loc);
+        locations.put(loc.getUID(), loc);
+    }
+
+    public void clear() {
+        worlds.clear();
+        locations.clear();
+    }
+
+    public boolean contains(int UID) {
+        return locations.containsKey(UID);
+    }
+
+    public NPCLocation get(int UID) {
+        return locations.get(UID);
+    }
+
+    public NPCLocation remove(int UID) {
+        NPCLocation loc = locations.remove(UID);
+        if (loc == null)
+            return null;
+        Map<Long, List<NPCLocation>> chunks = worlds.get(loc.getWorldName());
+        long key = toKey(loc.getChunkX(), loc.getChunkZ());
+        List<NPCLocation> npcs = chunks.get(key);
+        npcs.remove(loc);
+        if (npcs.isEmpty()) {
+            chunks.remove(key);
+            if (chunks.isEmpty())
+                worlds.remove(loc.getWorldName());
+        }
+        return loc;
+    }
+
+    // Removes and returns every NPC indexed in the given chunk.
+    public List<NPCLocation> removeChunk(String world, int chunkX, int chunkZ) {
+        Map<Long, List<NPCLocation>> chunks = worlds.get(world);
+        if (chunks == null)
+            return Collections.emptyList();
+        List<NPCLocation> npcs = chunks.remove(toKey(chunkX, chunkZ));
+        if (npcs == null)
+            return Collections.emptyList();
+        if (chunks.isEmpty())
+            worlds.remove(world);
+        for (NPCLocation loc : npcs) {
+            locations.remove(loc.getUID());
+        }
+        return npcs;
+    }
+
+    // Gets every indexed NPC. The collection mustn't be modified.
+    public Collection<NPCLocation> values() {
+        return Collections.unmodifiableCollection(locations.values());
+    }
+
+    public int size() {
+        return locations.size();
+    }
+
+    private static long toKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
@@ -1,17 +1,23 @@
 package net.citizensnpcs.resources.npclib;
 
+import java.util.Deque;
 import java.util.Map;
 
 import net.citizensnpcs.Settings;
 import net.citizensnpcs.api.event.NPCCreateEvent;
 import net.citizensnpcs.api.event.NPCCreateEvent.NPCCreateReason;
 import net.citizensnpcs.api.event.NPCRemoveEvent.NPCRemoveReason;
+import net.citizensnpcs.misc.NPCLocation;
+import net.citizensnpcs.npcdata.NPCAttributes;
 import net.citizensnpcs.npcdata.NPCData;
 import net.citizensnpcs.npcdata.NPCDataManager;
+import net.citizensnpcs.npctypes.CitizensNPC;
 import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.utils.Messaging;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.craftbukkit.entity.CraftEntity;
 import org.bukkit.entity.Entity;
@@ -22,6 +28,8 @@ import com.google.common.collect.MapMaker;
 public class NPCManager {
     public static final Map<Integer, String> GlobalUIDs = new MapMaker().makeMap();
     private static NPCList list = new NPCList();
+    private static final NPCChunkIndex index = new NPCChunkIndex();
+    private static final NPCAttributes attributes = new NPCAttributes();
 
     public static HumanNPC get(int UID) {
         return list.get(UID);
@@ -31,6 +39,16 @@ public class NPCManager {
         return list.getNPC(entity);
     }
 
+    // Gets the NPCs that are waiting for their chunk to load.
+    public static NPCChunkIndex getIndex() {
+        return index;
+    }
+
+    // Gets the columnar attributes of every spawned NPC.
+    public static NPCAttributes getAttributes() {
+        return attributes;
+    }
+
     // Gets the list of NPCs.
     public static NPCList getList() {
         return list;
@@ -68,7 +86,12 @@ public class NPCManager {
         if (list.get(UID) == null)
             return;
         GlobalUIDs.remove(UID);
-        NPCSpawner.despawnNPC(list.remove(UID), reason);
+        attributes.remove(UID);
+        HumanNPC npc = list.remove(UID);
+        for (CitizensNPC type : npc.types()) {
+            type.onRemove(npc);
+        }
+        NPCSpawner.despawnNPC(npc, reason);
     }
 
     // Despawns all NPCs.
@@ -88,11 +111,36 @@ public class NPCManager {
         despawn(UID, reason);
     }
 
-    // Removes all NPCs.
+    // Removes all NPCs, including those waiting for their chunk to load.
     public static void removeAll(NPCRemoveReason reason) {
         for (int i : GlobalUIDs.keySet()) {
             remove(i, reason);
         }
+        for (NPCLocation loc : index.values()) {
+            PropertyManager.remove(loc.getUID());
+        }
+        index.clear();
+    }
+
+    // Gets the number of known NPCs, spawned or waiting for their chunk.
+    public static int count() {
+        return GlobalUIDs.size() + index.size();
+    }
+
+    // Gets the number of known NPCs owned by the given player.
+    public static int count(String owner) {
+        int count = 0;
+        for (HumanNPC npc : list.values()) {
+            if (npc.getOwner().equals(owner)) {
+                ++count;
+            }
+        }
+        for (NPCLocation loc : index.values()) {
+            if (owner.equals(loc.getOwner())) {
+                ++count;
+            }
+        }
+        return count;
     }
 
     // Removes an NPC, but not from the properties.
@@ -101,6 +149,33 @@ public class NPCManager {
         despawn(UID, NPCRemoveReason.UNLOAD);
     }
 
+    // Spawns every NPC waiting on the given chunk.
+    public static void loadChunk(Chunk chunk) {
+        for (NPCLocation loc : index.removeChunk(chunk.getWorld().getName(), chunk.getX(), chunk.getZ())) {
+            spawn(loc, NPCCreateReason.RESPAWN);
+            Messaging.debug("Loaded", loc.getUID(), "due to chunk load at", loc.getChunkX(), loc.getChunkZ());
+        }
+    }
+
+    // Saves and despawns an NPC, keeping it in the index until its chunk
+    // loads again.
+    public static void unload(HumanNPC npc) {
+        PropertyManager.save(npc);
+        index.add(new NPCLocation(npc.getLocation(), npc.getUID(), npc.getOwner()));
+        despawn(npc.getUID(), NPCRemoveReason.UNLOAD);
+    }
+
+    private static void spawn(NPCLocation loc, NPCCreateReason reason) {
+        int UID = loc.getUID();
+        register(UID, loc.getOwner(), reason);
+        if (!NPCDataManager.NPCTexts.containsKey(UID)) {
+            Deque<String> text = PropertyManager.getBasic().getText(UID);
+            if (text != null) {
+                NPCDataManager.setText(UID, text);
+            }
+        }
+    }
+
     // Registers a UID in the global list.
     private static void registerUID(int UID, String name) {
         GlobalUIDs.put(UID, name);
@@ -138,19 +213,13 @@ public class NPCManager {
 
     // Spawns a new NPC and registers it.
     public static void register(int UID, String owner, NPCCreateReason reason) {
+        index.remove(UID);
         Location loc = PropertyManager.getBasic().getLocation(UID);
 
         ChatColor colour = PropertyManager.getBasic().getColour(UID);
-        String name = PropertyManager.getBasic().getName(UID);
-        name = ChatColor.stripColor(name);
-        if (!Settings.getString("SpaceChar").isEmpty()) {
-            name = name.replace(Settings.getString("SpaceChar"), " ");
-        }
-        String npcName = name;
-        if (colour != null && colour != ChatColor.WHITE) {
-            npcName = colour + name;
-        }
+        String npcName = getDisplayName(PropertyManager.getBasic().getName(UID), colour);
         HumanNPC npc = NPCSpawner.spawnNPC(UID, npcName, loc);
+        attributes.add(npc);
 
         NPCCreateEvent event = new NPCCreateEvent(npc, reason, loc);
         Bukkit.getServer().getPluginManager().callEvent(event);
@@ -168,6 +237,50 @@ public class NPCManager {
         npc.getPlayer().setSleepingIgnored(true); // Fix beds.
     }
 
+    // Spawns an NPC from an already parsed descriptor and registers it.
+    public static HumanNPC register(NPCSpawnDescriptor descriptor, NPCCreateReason reason) {
+        int UID = descriptor.getUID();
+        index.remove(UID);
+        Location loc = descriptor.getLocation();
+
+        ChatColor colour = descriptor.getColour();
+        String npcName = getDisplayName(descriptor.getName(), colour);
+        HumanNPC npc = NPCSpawner.spawnNPC(UID, npcName, loc);
+        if (npc == null)
+            return null;
+        attributes.add(npc);
+
+        NPCCreateEvent event = new NPCCreateEvent(npc, reason, loc);
+        Bukkit.getServer().getPluginManager().callEvent(event);
+
+        npc.setNPCData(new NPCData(npcName, UID, loc, colour, descriptor.getItems(), NPCDataManager.NPCTexts
+                .get(UID), descriptor.isTalk(), descriptor.isLookClose(), descriptor.isTalkClose(), descriptor
+                .getOwner()));
+        PropertyManager.getBasic().saveOwner(UID, descriptor.getOwner());
+        PropertyManager.load(npc, descriptor);
+
+        registerUID(UID, npcName);
+        list.put(UID, npc);
+        if (!NPCDataManager.NPCTexts.containsKey(UID) && descriptor.getText() != null) {
+            NPCDataManager.setText(UID, descriptor.getText());
+        }
+        PropertyManager.save(npc);
+
+        npc.getPlayer().setSleepingIgnored(true); // Fix beds.
+        return npc;
+    }
+
+    private static String getDisplayName(String name, ChatColor colour) {
+        name = ChatColor.stripColor(name);
+        if (!Settings.getString("SpaceChar").isEmpty()) {
+            name = name.replace(Settings.getString("SpaceChar"), " ");
+        }
+        if (colour != null && colour != ChatColor.WHITE) {
+            return colour + name;
+        }
+        return name;
+    }
+
     // Registers a new NPC.
     public static int register(String name, Location loc, String owner, NPCCreateReason reason) {
         int UID = PropertyManager.getBasic().getNewNpcID();
@@ -0,0 +1,132 @@
+package net.citizensnpcs.resources.npclib;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import net.citizensnpcs.misc.NPCLocation;
+import net.citizensnpcs.npcdata.ItemData;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.inventory.ItemStack;
+
+import com.google.common.collect.Lists;
+
+/**
+ * An immutable, already parsed copy of the basic properties needed to spawn
+ * an NPC. Descriptors can be built off the main thread; only
+ * {@link #getLocation()} touches the server.
+ */
+public class NPCSpawnDescriptor {
+    private final int UID;
+    private final String owner;
+    private final String name;
+    private final ChatColor colour;
+    private final String world;
+    private final double x, y, z;
+    private final float yaw, pitch;
+    private final List<ItemData> items;
+    private final List<String> text;
+    private final ItemStack[] inventory;
+    private final boolean talk, lookClose, talkClose;
+
+    public NPCSpawnDescriptor(int UID, String owner, String name, ChatColor colour, String world, double x, double y,
+            double z, float yaw, float pitch, List<ItemData> items, Deque<String> text, ItemStack[] inventory,
+            boolean talk, boolean lookClose, boolean talkClose) {
+        this.UID = UID;
+        this.owner = owner;
+        this.name = name;
+        this.colour = colour;
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.items = Collections.unmodifiableList(Lists.newArrayList(items));
+        this.text = text == null ? null : Collections.unmodifiableList(Lists.newArrayList(text));
+        this.inventory = inventory == null ? null : copy(inventory);
+        this.talk = talk;
+        this.lookClose = lookClose;
+        this.talkClose = talkClose;
+    }
+
+    public int getUID() {
+        return UID;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ChatColor getColour() {
+        return colour;
+    }
+
+    public String getWorldName() {
+        return world;
+    }
+
+    public int getChunkX() {
+        return (int) Math.floor(x) >> 4;
+    }
+
+    public int getChunkZ() {
+        return (int) Math.floor(z) >> 4;
+    }
+
+    // Squared distance to the given location, ignoring worlds.
+    public double distanceSquared(Location loc) {
+        double dx = loc.getX() - x, dy = loc.getY() - y, dz = loc.getZ() - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    public NPCLocation toNPCLocation() {
+        return new NPCLocation(world, x, y, z, yaw, pitch, UID, owner);
+    }
+
+    public Location getLocation() {
+        World bukkitWorld = Bukkit.getServer().getWorld(world);
+        return bukkitWorld == null ? null : new Location(bukkitWorld, x, y, z, yaw, pitch);
+    }
+
+    public List<ItemData> getItems() {
+        return Lists.newArrayList(items);
+    }
+
+    public Deque<String> getText() {
+        return text == null ? null : new ArrayDeque<String>(text);
+    }
+
+    public ItemStack[] getInventory() {
+        return inventory == null ? null : copy(inventory);
+    }
+
+    public boolean isTalk() {
+        return talk;
+    }
+
+    public boolean isLookClose() {
+        return lookClose;
+    }
+
+    public boolean isTalkClose() {
+        return talkClose;
+    }
+
+    private static ItemStack[] copy(ItemStack[] stacks) {
+        ItemStack[] copy = new ItemStack[stacks.length];
+        for (int i = 0; i < stacks.length; ++i) {
+            copy[i] = stacks[i] == null ? null : stacks[i].clone();
+        }
+        return copy;
+    }
+}
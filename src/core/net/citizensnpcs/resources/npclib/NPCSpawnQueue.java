@@ -0,0 +1,164 @@
+package net.citizensnpcs.resources.npclib;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.citizensnpcs.api.event.NPCCreateEvent.NPCCreateReason;
+import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.utils.Messaging;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Spawns parsed NPCs a few at a time each tick, closest to online players
+ * (then world spawns) first.
+ */
+public class NPCSpawnQueue implements Runnable {
+    private final Deque<NPCSpawnDescriptor> queue;
+    private final int perTick;
+    private final boolean lazy;
+    private final Runnable callback;
+    private int taskID = -1;
+
+    public NPCSpawnQueue(List<NPCSpawnDescriptor> descriptors, int perTick, boolean lazy, Runnable callback) {
+        this.queue = Lists.newLinkedList(sort(descriptors));
+        this.perTick = Math.max(1, perTick);
+        this.lazy = lazy;
+        this.callback = callback;
+    }
+
+    public void start(Plugin plugin) {
+        taskID = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, this, 0, 1);
+        if (taskID == -1) {
+            // fall back to spawning everything at once.
+            while (!queue.isEmpty())
+                spawn(queue.poll());
+            finish();
+        }
+    }
+
+    @Override
+    public void run() {
+        for (int i = 0; i < perTick && !queue.isEmpty(); ++i) {
+            spawn(queue.poll());
+        }
+        if (queue.isEmpty()) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (taskID != -1) {
+            Bukkit.getScheduler().cancelTask(taskID);
+            taskID = -1;
+        }
+        if (callback != null)
+            callback.run();
+    }
+
+    private void spawn(NPCSpawnDescriptor descriptor) {
+        // the NPC may have been created or removed since it was parsed.
+        if (NPCManager.get(descriptor.getUID()) != null
+                || !PropertyManager.getNPCProfiles().keyExists("" + descriptor.getUID()))
+            return;
+        World world = Bukkit.getServer().getWorld(descriptor.getWorldName());
+        if (lazy && (world == null || !world.isChunkLoaded(descriptor.getChunkX(), descriptor.getChunkZ()))) {
+            NPCManager.getIndex().add(descriptor.toNPCLocation());
+            return;
+        }
+        if (world != null) {
+            NPCManager.register(descriptor, NPCCreateReason.SPAWN);
+        }
+    }
+
+    private static List<NPCSpawnDescriptor> sort(List<NPCSpawnDescriptor> descriptors) {
+        final Map<NPCSpawnDescriptor, Double> distances = Maps.newHashMap();
+        Player[] online = Bukkit.getServer().getOnlinePlayers();
+        for (NPCSpawnDescriptor descriptor : descriptors) {
+            World world = Bukkit.getServer().getWorld(descriptor.getWorldName());
+            if (world == null) {
+                distances.put(descriptor, Double.MAX_VALUE);
+                continue;
+            }
+            double closest = Double.MAX_VALUE;
+            for (Player player : online) {
+                if (player.getWorld() == world)
+                    closest = Math.min(closest, descriptor.distanceSquared(player.getLocation()));
+            }
+            if (closest == Double.MAX_VALUE) {
+                // rank behind anything near a player.
+                closest = SPAWN_OFFSET + descriptor.distanceSquared(world.getSpawnLocation());
+            }
+            distances.put(descriptor, closest);
+        }
+        List<NPCSpawnDescriptor> sorted = Lists.newArrayList(descriptors);
+        Collections.sort(sorted, new Comparator<NPCSpawnDescriptor>() {
+            @Override
+            public int compare(NPCSpawnDescriptor o1, NPCSpawnDescriptor o2) {
+                return Double.compare(distances.get(o1), distances.get(o2));
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Parses the given NPCs into spawn descriptors, splitting the work across
+     * the available processors. NPCs that can't be parsed are skipped.
+     */
+    public static List<NPCSpawnDescriptor> parse(List<Integer> UIDs) {
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), UIDs.size() / MIN_PER_THREAD);
+        if (threads <= 1)
+            return parseAll(UIDs);
+        List<NPCSpawnDescriptor> parsed = Lists.newArrayListWithCapacity(UIDs.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<List<NPCSpawnDescriptor>>> tasks = Lists.newArrayList();
+            for (final List<Integer> part : Lists.partition(UIDs, (UIDs.size() + threads - 1) / threads)) {
+                tasks.add(new Callable<List<NPCSpawnDescriptor>>() {
+                    @Override
+                    public List<NPCSpawnDescriptor> call() {
+                        return parseAll(part);
+                    }
+                });
+            }
+            for (Future<List<NPCSpawnDescriptor>> future : executor.invokeAll(tasks)) {
+                parsed.addAll(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Messaging.log("Error while parsing NPCs, falling back to a single thread: " + ex.getCause());
+            parsed = parseAll(UIDs);
+        } finally {
+            executor.shutdown();
+        }
+        return parsed;
+    }
+
+    private static List<NPCSpawnDescriptor> parseAll(List<Integer> UIDs) {
+        List<NPCSpawnDescriptor> parsed = Lists.newArrayListWithCapacity(UIDs.size());
+        for (int UID : UIDs) {
+            NPCSpawnDescriptor descriptor = PropertyManager.getBasic().getSpawnDescriptor(UID);
+            if (descriptor != null)
+                parsed.add(descriptor);
+        }
+        return parsed;
+    }
+
+    private static final int MIN_PER_THREAD = 32;
+    private static final double SPAWN_OFFSET = 1E12;
+}
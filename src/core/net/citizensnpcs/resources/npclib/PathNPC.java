@@ -45,6 +45,7 @@ public class PathNPC extends EntityPlayer {
     private int attackTimesLimit = -1;
     private int prevX, prevY, prevZ;
     private final AutoPathfinder autoPathfinder;
+    private final SightCache sightCache = new SightCache();
     private static final double JUMP_FACTOR = 0.07D;
 
     public PathNPC(MinecraftServer minecraftserver, World world, String s, ItemInWorldManager iteminworldmanager) {
@@ -168,6 +169,11 @@ public class PathNPC extends EntityPlayer {
     }
 
     public boolean isInSight(Entity entity) {
+        return sightCache.isInSight(this, entity);
+    }
+
+    // Ray-traces without going through the cache.
+    boolean traceSight(Entity entity) {
         return this.h(entity);
     }
 
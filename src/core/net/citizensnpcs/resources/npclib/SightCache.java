@@ -0,0 +1,117 @@
+package net.citizensnpcs.resources.npclib;
+
+import net.citizensnpcs.Settings;
+import net.minecraft.server.Entity;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+/**
+ * Remembers an NPC's last few line of sight checks for a few ticks, so that
+ * checking the same entity every tick doesn't ray-trace every tick. A result
+ * is thrown away once either side has moved more than a block, or once a
+ * block inside the box spanned by the two has changed. Only accessed from the
+ * main thread.
+ */
+public class SightCache {
+    private final Entity[] entities = new Entity[SIZE];
+    private final boolean[] results = new boolean[SIZE];
+    private final long[] ticks = new long[SIZE];
+    private final int[] changeMarks = new int[SIZE];
+    private final double[] positions = new double[SIZE * 6];
+    private int next;
+
+    private static long tick;
+    // A ring of the most recent block changes. changeCount is the total
+    // number of changes recorded so far.
+    private static final World[] changeWorlds = new World[CHANGES];
+    private static final int[] changeX = new int[CHANGES], changeY = new int[CHANGES], changeZ = new int[CHANGES];
+    private static int changeCount;
+
+    boolean isInSight(PathNPC npc, Entity entity) {
+        int ttl = Settings.getInt("SightCacheTicks");
+        if (ttl <= 0)
+            return npc.traceSight(entity);
+        for (int i = 0; i < SIZE; ++i) {
+            if (entities[i] != entity)
+                continue;
+            if (isValid(i, npc, entity, ttl))
+                return results[i];
+            return store(i, npc, entity);
+        }
+        int index = next;
+        next = (next + 1) % SIZE;
+        return store(index, npc, entity);
+    }
+
+    private boolean isValid(int index, PathNPC npc, Entity entity, int ttl) {
+        if (tick - ticks[index] >= ttl || entity.dead || entity.world != npc.world)
+            return false;
+        int offset = index * 6;
+        if (moved(offset, npc) || moved(offset + 3, entity))
+            return false;
+        if (changeCount - changeMarks[index] > CHANGES)
+            return false;
+        World world = npc.world.getWorld();
+        int minX = floor(Math.min(npc.locX, entity.locX)) - 1, maxX = floor(Math.max(npc.locX, entity.locX)) + 1;
+        int minY = floor(Math.min(npc.locY, entity.locY)) - 1, maxY = floor(Math.max(npc.locY, entity.locY)) + 2;
+        int minZ = floor(Math.min(npc.locZ, entity.locZ)) - 1, maxZ = floor(Math.max(npc.locZ, entity.locZ)) + 1;
+        for (int i = changeMarks[index]; i != changeCount; ++i) {
+            int change = i & (CHANGES - 1);
+            if (changeWorlds[change] == world && changeX[change] >= minX && changeX[change] <= maxX
+                    && changeY[change] >= minY && changeY[change] <= maxY && changeZ[change] >= minZ
+                    && changeZ[change] <= maxZ)
+                return false;
+        }
+        return true;
+    }
+
+    private boolean moved(int offset, Entity entity) {
+        double dx = entity.locX - positions[offset], dy = entity.locY - positions[offset + 1], dz = entity.locZ
+                - positions[offset + 2];
+        return dx * dx + dy * dy + dz * dz > 1;
+    }
+
+    private boolean store(int index, PathNPC npc, Entity entity) {
+        boolean result = npc.traceSight(entity);
+        entities[index] = entity;
+        results[index] = result;
+        ticks[index] = tick;
+        changeMarks[index] = changeCount;
+        int offset = index * 6;
+        positions[offset] = npc.locX;
+        positions[offset + 1] = npc.locY;
+        positions[offset + 2] = npc.locZ;
+        positions[offset + 3] = entity.locX;
+        positions[offset + 4] = entity.locY;
+        positions[offset + 5] = entity.locZ;
+        return result;
+    }
+
+    // Called once at the start of each tick.
+    public static void nextTick() {
+        ++tick;
+    }
+
+    /**
+     * Records that a block has changed, so that cached results whose line
+     * might pass through it are thrown away.
+     */
+    public static void blockChanged(Block block) {
+        int change = changeCount & (CHANGES - 1);
+        changeWorlds[change] = block.getWorld();
+        changeX[change] = block.getX();
+        changeY[change] = block.getY();
+        changeZ[change] = block.getZ();
+        ++changeCount;
+    }
+
+    private static int floor(double value) {
+        int floored = (int) value;
+        return value < floored ? floored - 1 : floored;
+    }
+
+    private static final int SIZE = 4;
+    // Must be a power of two.
+    private static final int CHANGES = 256;
+}
@@ -18,6 +18,12 @@ public class HelpUtils {
 			format(sender, "citizens", "save", "force a save of Citizens files");
 			format(sender, "citizens", "debug", "toggle Citizens debug mode");
 			format(sender, "citizens", "clean", "remove ghost NPCs");
+			format(sender, "citizens", "backup (list|restore [name])",
+					"back up or restore Citizens files");
+			format(sender, "citizens", "export|import [file]",
+					"export or import NPCs");
+			format(sender, "citizens", "migrate [type]",
+					"move NPCs to another storage type");
 			format(sender, "toggle", "help (page)",
 					"view available toggleable types");
 			format(sender, "toggle", "[type]", "toggle an NPC type");
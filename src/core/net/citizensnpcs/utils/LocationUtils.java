@@ -1,12 +1,11 @@
 package net.citizensnpcs.utils;
 
 import net.citizensnpcs.properties.Storage;
+import net.citizensnpcs.properties.codec.Codecs;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 
-import com.google.common.base.Joiner;
-
 public class LocationUtils {
 
 	/**
@@ -26,38 +25,22 @@ public class LocationUtils {
 
 	public static Location loadLocation(Storage storage, String path,
 			boolean shortened) {
-		String world;
-		double x, y, z;
-		float pitch, yaw;
-		if (shortened) {
-			String[] read = storage.getString(path + ".location").split(",");
-			world = read[0];
-			x = Double.parseDouble(read[1]);
-			y = Double.parseDouble(read[2]);
-			z = Double.parseDouble(read[3]);
-			pitch = Float.parseFloat(read[4]);
-			yaw = Float.parseFloat(read[5]);
-		} else {
-			world = storage.getString(path + ".location.world");
-			x = storage.getDouble(path + ".location.x");
-			y = storage.getDouble(path + ".location.y");
-			z = storage.getDouble(path + ".location.z");
-			pitch = (float) storage.getDouble(path + ".location.pitch");
-			yaw = (float) storage.getDouble(path + ".location.yaw");
-		}
-		return new Location(Bukkit.getServer().getWorld(world), x, y, z, pitch,
-				yaw);
+		if (shortened)
+			return Codecs.WAYPOINT_LOCATION.get(storage, path + ".location");
+		String world = storage.getString(path + ".location.world");
+		double x = storage.getDouble(path + ".location.x");
+		double y = storage.getDouble(path + ".location.y");
+		double z = storage.getDouble(path + ".location.z");
+		float pitch = (float) storage.getDouble(path + ".location.pitch");
+		float yaw = (float) storage.getDouble(path + ".location.yaw");
+		return new Location(Bukkit.getServer().getWorld(world), x, y, z, yaw,
+				pitch);
 	}
 
 	public static void saveLocation(Storage storage, Location loc, String path,
 			boolean shortened) {
 		if (shortened) {
-			storage.setString(
-					path + ".location",
-					Joiner.on(",").join(
-							new Object[] { loc.getWorld().getName(),
-									loc.getX(), loc.getY(), loc.getZ(),
-									loc.getPitch(), loc.getYaw() }));
+			Codecs.WAYPOINT_LOCATION.set(storage, path + ".location", loc);
 		} else {
 			storage.setString(path + ".location.world", loc.getWorld()
 					.getName());
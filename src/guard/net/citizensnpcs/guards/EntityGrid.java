@@ -0,0 +1,150 @@
+package net.citizensnpcs.guards;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.World;
+import org.bukkit.craftbukkit.entity.CraftEntity;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * A grid of the living entities in each world, built at most once per tick
+ * the first time a guard queries that world. Entities are kept in arrays
+ * sorted by cell, so a query only touches the cells it overlaps and doesn't
+ * allocate. Only accessed from the main thread.
+ */
+public class EntityGrid {
+	private static final Map<World, Grid> grids = new MapMaker().weakKeys()
+			.makeMap();
+	private static long tick;
+
+	// Marks every grid as stale. Called once at the start of each tick.
+	public static void nextTick() {
+		++tick;
+	}
+
+	/**
+	 * Adds every living entity other than the given one whose position is
+	 * within the given distances of its position along each axis to the
+	 * buffer, after clearing it.
+	 */
+	public static void query(Entity center, double rangeX, double rangeY,
+			double rangeZ, List<LivingEntity> buffer) {
+		net.minecraft.server.Entity handle = ((CraftEntity) center)
+				.getHandle();
+		query(center.getWorld(), handle.locX, handle.locY, handle.locZ,
+				rangeX, rangeY, rangeZ, center, buffer);
+	}
+
+	/**
+	 * Adds every living entity in the world other than the excluded one
+	 * whose position is within the given distances of a point along each
+	 * axis to the buffer, after clearing it.
+	 */
+	public static void query(World world, double x, double y, double z,
+			double rangeX, double rangeY, double rangeZ, Entity exclude,
+			List<LivingEntity> buffer) {
+		buffer.clear();
+		Grid grid = grids.get(world);
+		if (grid == null)
+			grids.put(world, grid = new Grid());
+		if (grid.built != tick)
+			grid.build(world);
+		grid.query(exclude, x, y, z, rangeX, rangeY, rangeZ, buffer);
+	}
+
+	private static long pack(int cellX, int cellZ, int index) {
+		return ((long) ((cellX + CELL_OFFSET) & CELL_MASK) << 42)
+				| ((long) ((cellZ + CELL_OFFSET) & CELL_MASK) << 20) | index;
+	}
+
+	private static int toCell(double coordinate) {
+		return (int) Math.floor(coordinate) >> CELL_SHIFT;
+	}
+
+	private static class Grid {
+		private long built = -1;
+		private int size;
+		private LivingEntity[] entities = new LivingEntity[0];
+		private double[] x = new double[0], y = new double[0],
+				z = new double[0];
+		private long[] keys = new long[0];
+
+		void build(World world) {
+			List<LivingEntity> living = world.getLivingEntities();
+			int previous = size;
+			if (living.size() > entities.length) {
+				int capacity = Math.max(living.size(), entities.length * 2);
+				entities = new LivingEntity[capacity];
+				x = new double[capacity];
+				y = new double[capacity];
+				z = new double[capacity];
+				keys = new long[capacity];
+				previous = 0;
+			}
+			size = 0;
+			for (LivingEntity entity : living) {
+				net.minecraft.server.Entity handle = ((CraftEntity) entity)
+						.getHandle();
+				if (handle.dead || size > INDEX_MASK)
+					continue;
+				entities[size] = entity;
+				x[size] = handle.locX;
+				y[size] = handle.locY;
+				z[size] = handle.locZ;
+				keys[size] = pack(toCell(handle.locX), toCell(handle.locZ),
+						size);
+				++size;
+			}
+			Arrays.sort(keys, 0, size);
+			// let go of entities that are no longer in the world.
+			if (previous > size)
+				Arrays.fill(entities, size, previous, null);
+			built = tick;
+		}
+
+		void query(Entity exclude, double px, double py, double pz,
+				double rangeX, double rangeY, double rangeZ,
+				List<LivingEntity> buffer) {
+			int minZ = toCell(pz - rangeZ), maxZ = toCell(pz + rangeZ);
+			int minX = toCell(px - rangeX), maxX = toCell(px + rangeX);
+			for (int cellX = minX; cellX <= maxX; ++cellX) {
+				// the cells of a column are contiguous in the sorted keys.
+				long end = pack(cellX, maxZ, INDEX_MASK);
+				for (int i = search(pack(cellX, minZ, 0)); i < size
+						&& keys[i] <= end; ++i) {
+					int index = (int) (keys[i] & INDEX_MASK);
+					LivingEntity entity = entities[index];
+					if (entity == exclude || entity.isDead()
+							|| Math.abs(x[index] - px) > rangeX
+							|| Math.abs(y[index] - py) > rangeY
+							|| Math.abs(z[index] - pz) > rangeZ)
+						continue;
+					buffer.add(entity);
+				}
+			}
+		}
+
+		// Finds the first key that is not less than the given key.
+		private int search(long key) {
+			int low = 0, high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (keys[mid] < key)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+	}
+
+	private static final int CELL_SHIFT = 4;
+	private static final int CELL_OFFSET = 1 << 21;
+	private static final int CELL_MASK = (1 << 22) - 1;
+	private static final int INDEX_MASK = (1 << 20) - 1;
+}
@@ -26,6 +26,7 @@ public class Guard extends CitizensNPC {
     private boolean isAggressive = true;
     private GuardState guardState = GuardState.NULL;
     private final FlagList flags = new FlagList();
+    private final ThreatTable threats = new ThreatTable();
     private double radius = 10;
 
     // Get a guard's blacklist
@@ -33,6 +34,14 @@ public class Guard extends CitizensNPC {
         return flags;
     }
 
+    public ThreatTable getThreats() {
+        return threats;
+    }
+
+    public LivingEntity getWatched(HumanNPC npc) {
+        return guardState == GuardState.NULL ? null : guardState.getUpdater().getWatched(npc);
+    }
+
     // Get the protection radius for a bouncer
     public double getProtectionRadius() {
         return radius;
@@ -58,9 +67,9 @@ public class Guard extends CitizensNPC {
 
     @Override
     public void load(Storage profiles, int UID) {
-        guardState = GuardState.parse(profiles.getString(UID + ".guard.type"));
-        isAggressive = profiles.getBoolean(UID + ".guard.aggressive");
-        radius = profiles.getDouble(UID + ".guard.radius", Settings.getDouble("DefaultBouncerProtectionRadius"));
+        guardState = GuardState.parse(GuardProperties.type.get(UID));
+        isAggressive = GuardProperties.aggressive.get(UID);
+        radius = GuardProperties.radius.get(UID, Settings.getDouble("DefaultBouncerProtectionRadius"));
     }
 
     @Override
@@ -75,6 +84,7 @@ public class Guard extends CitizensNPC {
             event.setCancelled(true);
             return;
         }
+        threats.raise((LivingEntity) ev.getDamager(), Settings.getInt("GuardThreatTicks"));
         if (guardState != GuardState.NULL)
             guardState.getUpdater().onDamage(npc, (LivingEntity) ev.getDamager());
         else if (this.isAggressive) {
@@ -102,9 +112,9 @@ public class Guard extends CitizensNPC {
 
     @Override
     public void save(Storage profiles, int UID) {
-        profiles.setString(UID + ".guard.type", guardState.name());
-        profiles.setBoolean(UID + ".guard.aggressive", isAggressive);
-        profiles.setDouble(UID + ".guard.radius", radius);
+        GuardProperties.type.set(UID, guardState.name());
+        GuardProperties.aggressive.set(UID, isAggressive);
+        GuardProperties.radius.set(UID, radius);
     }
 
     // Set whether a bodyguard kills on sight
@@ -115,6 +125,7 @@ public class Guard extends CitizensNPC {
     // Set the type of a guard that a guard NPC is
     public void setGuardState(GuardState guardState) {
         this.guardState = guardState;
+        threats.clear();
     }
 
     // Set the protection radius for a bouncer
@@ -131,6 +142,16 @@ public class Guard extends CitizensNPC {
         PathUtils.target(npc, entity, true, -1, -1, Settings.getDouble("PathfindingRange"));
     }
 
+    @Override
+    public void onAdd(HumanNPC npc) {
+        GuardTask.register(npc, this);
+    }
+
+    @Override
+    public void onRemove(HumanNPC npc) {
+        GuardTask.unregister(npc, this);
+    }
+
     public GuardStatus updateStatus(GuardStatus guardStatus, HumanNPC npc) {
         return guardState == GuardState.NULL ? GuardStatus.NORMAL : guardState.getUpdater().updateStatus(guardStatus,
                 npc);
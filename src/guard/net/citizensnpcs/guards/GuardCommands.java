@@ -188,7 +188,7 @@ public class GuardCommands extends CommandHandler {
         } else if (flags.contains('a')) {
             for (Character character : flags) {
                 player.sendMessage(ChatColor.GRAY + "Skipping unknown flag type " + character + ".");
-                guard.getFlags().getFlags(FlagType.fromCharacter(character)).clear();
+                guard.getFlags().clear(FlagType.fromCharacter(character));
             }
             player.sendMessage(ChatColor.GREEN + "All flags from specified types cleared.");
             return;
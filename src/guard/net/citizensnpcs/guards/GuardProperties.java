@@ -10,7 +10,10 @@ import net.citizensnpcs.guards.flags.FlagList;
 import net.citizensnpcs.guards.flags.FlagList.FlagType;
 import net.citizensnpcs.properties.Node;
 import net.citizensnpcs.properties.Properties;
+import net.citizensnpcs.properties.Property;
 import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.properties.PropertySchema;
+import net.citizensnpcs.properties.codec.ScalarCodec;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 
 import com.google.common.collect.Lists;
@@ -76,12 +79,12 @@ public class GuardProperties extends PropertyManager implements Properties {
 
 	@Override
 	public void setEnabled(HumanNPC npc, boolean value) {
-		profiles.setBoolean(npc.getUID() + isGuard, value);
+		isGuard.set(npc.getUID(), value);
 	}
 
 	@Override
 	public boolean isEnabled(HumanNPC npc) {
-		return profiles.getBoolean(npc.getUID() + isGuard);
+		return isGuard.get(npc.getUID());
 	}
 
 	@Override
@@ -91,6 +94,10 @@ public class GuardProperties extends PropertyManager implements Properties {
 				"guards.max.stationary-return-ticks", 25));
 		nodes.add(new Node("GuardRespawnDelay", SettingsType.GENERAL,
 				"guards.respawn-delay", 100));
+		nodes.add(new Node("GuardTargetInterval", SettingsType.GENERAL,
+				"guards.target-acquisition-interval", 5));
+		nodes.add(new Node("GuardThreatTicks", SettingsType.GENERAL,
+				"guards.threat-memory-ticks", 40));
 		nodes.add(new Node("DefaultBouncerProtectionRadius",
 				SettingsType.GENERAL,
 				"guards.bouncers.default.protection-radius", 10));
@@ -111,6 +118,14 @@ public class GuardProperties extends PropertyManager implements Properties {
 	private static final List<String> nodesForCopy = Lists.newArrayList(
 			"guard.toggle", "guard.type", "guard.radius", "guard.flags",
 			"guard.aggressive");
-	private static final String isGuard = ".guard.toggle";
+	private static final PropertySchema schema = new PropertySchema("guard");
+	private static final Property<Boolean> isGuard = schema.add("toggle",
+			ScalarCodec.BOOLEAN, false);
+	static final Property<String> type = schema.add("type",
+			ScalarCodec.STRING, "");
+	static final Property<Boolean> aggressive = schema.add("aggressive",
+			ScalarCodec.BOOLEAN, false);
+	static final Property<Double> radius = schema.add("radius",
+			ScalarCodec.DOUBLE, null);
 	private static final String flag = ".guard.flags";
 }
\ No newline at end of file
@@ -1,26 +1,142 @@
 package net.citizensnpcs.guards;
 
+import java.util.List;
 import java.util.Map;
 
-import net.citizensnpcs.api.CitizensManager;
+import net.citizensnpcs.Settings;
+import net.citizensnpcs.guards.flags.FlagTable;
 import net.citizensnpcs.guards.types.GuardStatus;
 import net.citizensnpcs.resources.npclib.HumanNPC;
+import net.citizensnpcs.resources.npclib.NPCManager;
 
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+/**
+ * Updates every registered guard. Each guard keeps a {@link ThreatTable} fed
+ * by damage to it or its owner, and by a sweep of the {@link EntityGrid}
+ * around its watched area once per acquisition interval, each guard on its own
+ * phase so that the work is spread over the interval. Guards that are
+ * attacking, returning or have threats are updated every tick; idle guards
+ * with an empty table are only updated when they sweep.
+ */
 public class GuardTask implements Runnable {
-	private final static Map<HumanNPC, GuardStatus> states = Maps.newHashMap();
+	private static final List<Entry> guards = Lists.newArrayList();
+	private static final Map<HumanNPC, Entry> entries = Maps.newHashMap();
+	private static final List<LivingEntity> nearby = Lists.newArrayList();
+	private static int nextPhase;
+	private static long tick;
 
 	@Override
 	public void run() {
-		for (HumanNPC npc : CitizensManager.getList().values()) {
-			if (!npc.isType("guard")) {
+		++tick;
+		EntityGrid.nextTick();
+		int interval = Math.max(1, Settings.getInt("GuardTargetInterval"));
+		for (int i = 0; i < guards.size(); ++i) {
+			Entry entry = guards.get(i);
+			if (entry.removed)
+				continue;
+			HumanNPC npc = entry.npc;
+			ThreatTable threats = entry.guard.getThreats();
+			threats.decay();
+			boolean sweep = (tick + entry.phase) % interval == 0;
+			if (sweep)
+				sweep(entry);
+			if (entry.status == GuardStatus.NORMAL && !sweep
+					&& threats.isEmpty() && !npc.getHandle().hasTarget())
 				continue;
-			}
-			Guard guard = npc.getType("guard");
-			if (!states.containsKey(npc))
-				states.put(npc, GuardStatus.NORMAL);
-			states.put(npc, guard.updateStatus(states.get(npc), npc));
+			entry.status = entry.guard.updateStatus(entry.status, npc);
+		}
+		purge();
+	}
+
+	// Refreshes the threat of every targetable entity around the watched
+	// entity, in the same r/2 x r x r/2 box that guards have always used.
+	private static void sweep(Entry entry) {
+		Guard guard = entry.guard;
+		if (!guard.isAggressive())
+			return;
+		LivingEntity watched = guard.getWatched(entry.npc);
+		if (watched == null)
+			return;
+		double radius = guard.getProtectionRadius();
+		EntityGrid.query(watched, radius / 2, radius, radius / 2, nearby);
+		FlagTable table = guard.getFlags().getTable();
+		int threat = Settings.getInt("GuardThreatTicks");
+		for (int i = 0; i < nearby.size(); ++i) {
+			LivingEntity entity = nearby.get(i);
+			if (table.get(entity) != null)
+				guard.getThreats().refresh(entity, threat);
+		}
+		nearby.clear();
+	}
+
+	/**
+	 * Raises the threat of an attacker for the bodyguards of the damaged
+	 * player. Whether they go after it is left to their flags when they next
+	 * pick a target, and NPCs with the same owner are ignored.
+	 */
+	public static void onOwnerDamage(Player owner, LivingEntity attacker) {
+		HumanNPC other = NPCManager.get(attacker);
+		if (other != null && other.getOwner().equalsIgnoreCase(owner.getName()))
+			return;
+		for (int i = 0; i < guards.size(); ++i) {
+			Entry entry = guards.get(i);
+			if (entry.removed || !entry.guard.isState(GuardState.BODYGUARD)
+					|| !entry.npc.getOwner().equalsIgnoreCase(owner.getName()))
+				continue;
+			entry.guard.getThreats().raise(attacker,
+					Settings.getInt("GuardThreatTicks"));
+		}
+	}
+
+	private static void purge() {
+		int size = 0;
+		for (int i = 0; i < guards.size(); ++i) {
+			Entry entry = guards.get(i);
+			if (!entry.removed)
+				guards.set(size++, entry);
+		}
+		while (guards.size() > size)
+			guards.remove(guards.size() - 1);
+	}
+
+	static void register(HumanNPC npc, Guard guard) {
+		Entry entry = entries.get(npc);
+		if (entry != null) {
+			entry.guard = guard;
+			return;
+		}
+		entry = new Entry(npc, guard, nextPhase++);
+		entries.put(npc, entry);
+		guards.add(entry);
+	}
+
+	// Removed entries are skipped and dropped at the end of the next run, so
+	// this is safe to call while guards are being updated.
+	static void unregister(HumanNPC npc, Guard guard) {
+		Entry entry = entries.get(npc);
+		if (entry == null || entry.guard != guard)
+			return;
+		entries.remove(npc);
+		entry.removed = true;
+		OwnerCache.remove(npc);
+	}
+
+	private static class Entry {
+		private final HumanNPC npc;
+		private final int phase;
+		private Guard guard;
+		private GuardStatus status = GuardStatus.NORMAL;
+		private boolean removed;
+
+		Entry(HumanNPC npc, Guard guard, int phase) {
+			this.npc = npc;
+			this.guard = guard;
+			this.phase = phase;
 		}
 	}
-}
\ No newline at end of file
+}
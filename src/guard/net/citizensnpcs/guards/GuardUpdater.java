@@ -9,4 +9,10 @@ public interface GuardUpdater {
 	GuardStatus updateStatus(GuardStatus current, HumanNPC npc);
 
 	void onDamage(HumanNPC npc, LivingEntity attacker);
+
+	/**
+	 * Gets the entity whose surroundings this guard watches, or null if it
+	 * doesn't look for threats on its own.
+	 */
+	LivingEntity getWatched(HumanNPC npc);
 }
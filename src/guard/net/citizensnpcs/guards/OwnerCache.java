@@ -0,0 +1,78 @@
+package net.citizensnpcs.guards;
+
+import java.util.List;
+import java.util.Map;
+
+import net.citizensnpcs.resources.npclib.HumanNPC;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The online owners of guards, keyed by NPC. An owner is looked up the first
+ * time it is needed and then kept up to date from join and quit events, so
+ * that finding it doesn't scan the online players every tick. Each entry
+ * remembers the owner name it was looked up for and is looked up again once
+ * the NPC's owner changes. Only accessed from the main thread.
+ */
+public class OwnerCache {
+	private static final Map<HumanNPC, Owner> owners = Maps.newHashMap();
+
+	/**
+	 * Gets the NPC's owner, or null if the owner is offline.
+	 */
+	public static Player get(HumanNPC npc) {
+		Owner owner = owners.get(npc);
+		String name = npc.getOwner();
+		if (owner == null || !owner.name.equals(name)) {
+			owner = new Owner(name, Bukkit.getPlayerExact(name));
+			owners.put(npc, owner);
+		}
+		return owner.player;
+	}
+
+	static void remove(HumanNPC npc) {
+		owners.remove(npc);
+	}
+
+	public static void onJoin(Player player) {
+		for (Owner owner : owners.values()) {
+			if (owner.player == null
+					&& owner.name.equalsIgnoreCase(player.getName()))
+				owner.player = player;
+		}
+	}
+
+	/**
+	 * Marks the player as offline.
+	 *
+	 * @return the NPCs that were cached as owned by the player
+	 */
+	public static List<HumanNPC> onQuit(Player player) {
+		List<HumanNPC> owned = Lists.newArrayList();
+		for (Map.Entry<HumanNPC, Owner> entry : owners.entrySet()) {
+			Owner owner = entry.getValue();
+			// skip NPCs that have been given to someone else since.
+			if (owner.player == player
+					&& owner.name.equals(entry.getKey().getOwner())) {
+				owner.player = null;
+				owned.add(entry.getKey());
+			}
+		}
+		return owned;
+	}
+
+	private static class Owner {
+		private final String name;
+		// null while the owner is offline.
+		private Player player;
+
+		Owner(String name, Player player) {
+			this.name = name;
+			this.player = player;
+		}
+	}
+}
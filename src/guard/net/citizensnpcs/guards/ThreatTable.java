@@ -0,0 +1,86 @@
+package net.citizensnpcs.guards;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.entity.LivingEntity;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The entities a guard has noticed, each with a threat measured in ticks. An
+ * entity's threat is raised when it hurts the guard or its owner and refreshed
+ * while it is seen in the guard's area, and it drops by one every tick, so the
+ * entity is forgotten some time after it was last seen. Only accessed from the
+ * main thread.
+ */
+public class ThreatTable {
+	private final List<LivingEntity> entities = Lists.newArrayList();
+	private int[] threats = new int[4];
+
+	// Adds to the entity's threat, for example after it attacked.
+	public void raise(LivingEntity entity, int threat) {
+		int index = indexOf(entity);
+		if (index == -1)
+			add(entity, threat);
+		else
+			threats[index] += threat;
+	}
+
+	// Makes sure the entity's threat is at least the given value.
+	public void refresh(LivingEntity entity, int threat) {
+		int index = indexOf(entity);
+		if (index == -1)
+			add(entity, threat);
+		else if (threats[index] < threat)
+			threats[index] = threat;
+	}
+
+	// Lowers every threat by one tick and forgets dead or forgotten entities.
+	public void decay() {
+		for (int i = entities.size() - 1; i >= 0; --i) {
+			if (--threats[i] <= 0 || entities.get(i).isDead())
+				remove(i);
+		}
+	}
+
+	public void clear() {
+		entities.clear();
+	}
+
+	public boolean isEmpty() {
+		return entities.isEmpty();
+	}
+
+	/**
+	 * Gets the entities that are currently a threat. The list is owned by the
+	 * table and mustn't be modified.
+	 */
+	public List<LivingEntity> getEntities() {
+		return entities;
+	}
+
+	private void add(LivingEntity entity, int threat) {
+		if (threat <= 0)
+			return;
+		if (entities.size() == threats.length)
+			threats = Arrays.copyOf(threats, threats.length * 2);
+		threats[entities.size()] = threat;
+		entities.add(entity);
+	}
+
+	private void remove(int index) {
+		int last = entities.size() - 1;
+		entities.set(index, entities.get(last));
+		threats[index] = threats[last];
+		entities.remove(last);
+	}
+
+	private int indexOf(LivingEntity entity) {
+		for (int i = 0; i < entities.size(); ++i) {
+			if (entities.get(i) == entity)
+				return i;
+		}
+		return -1;
+	}
+}
@@ -1,21 +1,20 @@
 package net.citizensnpcs.guards.flags;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.bukkit.Location;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 public class FlagList {
     private final Map<FlagType, Map<String, FlagInfo>> flags = getPopulatedMap();
-    private final FlagSorter predicates = new FlagSorter(this);
+    private FlagTable table;
     private LivingEntity result;
 
     private Map<FlagType, Map<String, FlagInfo>> getPopulatedMap() {
@@ -27,34 +26,16 @@ public class FlagList {
     }
 
     public boolean process(Location base, List<LivingEntity> toProcess) {
-        if (toProcess == null)
-            return false;
-        Iterable<LivingEntity> filtered = Iterables.filter(toProcess, predicates.getSorter());
-        List<LivingEntity> possible = predicates.getPossible(filtered);
-        switch (possible.size()) {
-        case 0:
-            return false;
-        case 1:
-            result = possible.get(0);
-            return true;
-        default:
-            double lowest = Integer.MAX_VALUE;
-            double distance;
-            LivingEntity closest = null;
-            for (LivingEntity entity : possible) {
-                distance = base.distance(entity.getLocation());
-                if (lowest > distance) {
-                    lowest = distance;
-                    closest = entity;
-                }
-            }
-            result = closest;
-            return true;
-        }
+        result = toProcess == null ? null : getTable().select(base.getX(), base.getY(), base.getZ(),
+                toProcess);
+        return result != null;
     }
 
-    public void processEntities(Location base, List<Entity> entities) {
-        process(base, predicates.transformToLiving(entities));
+    // Compiles the flags the first time they're needed after a change.
+    public FlagTable getTable() {
+        if (table == null)
+            table = new FlagTable(this);
+        return table;
     }
 
     public LivingEntity getResult() {
@@ -64,15 +45,17 @@ public class FlagList {
     public void addFlag(FlagType type, FlagInfo info) {
         if (info == null)
             throw new IllegalArgumentException("Info should not be null");
-        getFlags(type).put(info.getName(), info);
+        flags.get(type).put(info.getName(), info);
+        table = null;
     }
 
     public void removeFlag(FlagType type, String identifier) {
-        getFlags(type).remove(identifier);
+        flags.get(type).remove(identifier);
+        table = null;
     }
 
     public Map<String, FlagInfo> getFlags(FlagType type) {
-        return flags.get(type);
+        return Collections.unmodifiableMap(flags.get(type));
     }
 
     public void addToAll(Set<Character> set, FlagInfo info) {
@@ -99,10 +82,17 @@ public class FlagList {
 
     public void clear() {
         for (FlagType type : FlagType.values()) {
-            getFlags(type).clear();
+            clear(type);
         }
     }
 
+    public void clear(FlagType type) {
+        if (type == null)
+            return;
+        flags.get(type).clear();
+        table = null;
+    }
+
     public enum FlagType {
         GROUP('g'),
         MOB('m'),
@@ -0,0 +1,158 @@
+package net.citizensnpcs.guards.flags;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import net.citizensnpcs.guards.flags.FlagList.FlagType;
+import net.citizensnpcs.permissions.PermissionManager;
+import net.citizensnpcs.resources.npclib.NPCManager;
+import net.citizensnpcs.resources.npclib.creatures.CreatureNPC;
+import net.citizensnpcs.resources.npclib.creatures.CreatureNPCType;
+import net.citizensnpcs.resources.npclib.creatures.CreatureTask;
+import net.citizensnpcs.utils.StringUtils;
+
+import org.bukkit.craftbukkit.entity.CraftEntity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A {@link FlagList} compiled into lookup tables. Every mob type is resolved
+ * to the flag that applies to it up front, including the "all" fallback, and
+ * only flags that allow targeting are kept. Tables are never modified; the
+ * list compiles a new one after its flags change.
+ */
+public class FlagTable {
+    private final Map<EntityType, FlagInfo> mobs = Maps.newEnumMap(EntityType.class);
+    private final Map<CreatureNPCType, FlagInfo> creatures = Maps.newEnumMap(CreatureNPCType.class);
+    private final FlagInfo unnamedMobs;
+    private final Map<String, FlagInfo> players;
+    private final FlagInfo allPlayers;
+    private final Map<String, FlagInfo> groups;
+    private final FlagInfo allGroups;
+    // Group flags that allow targeting, ordered by priority.
+    private final FlagInfo[] sortedGroups;
+
+    FlagTable(FlagList list) {
+        Map<String, FlagInfo> mobFlags = list.getFlags(FlagType.MOB);
+        for (EntityType type : EntityType.values()) {
+            if (type.getName() != null)
+                put(mobs, type, resolve(mobFlags, type.getName().toLowerCase()));
+        }
+        for (CreatureNPCType type : CreatureNPCType.values()) {
+            put(creatures, type, resolve(mobFlags, StringUtils.format(type, false)));
+        }
+        unnamedMobs = targetable(mobFlags.get("all"));
+
+        players = ImmutableMap.copyOf(list.getFlags(FlagType.PLAYER));
+        allPlayers = players.get("all");
+
+        groups = ImmutableMap.copyOf(list.getFlags(FlagType.GROUP));
+        allGroups = groups.get("all");
+        List<FlagInfo> sorted = Lists.newArrayList();
+        for (FlagInfo info : groups.values()) {
+            if (!info.isSafe())
+                sorted.add(info);
+        }
+        sortedGroups = sorted.toArray(new FlagInfo[sorted.size()]);
+        Arrays.sort(sortedGroups, priorityComparer);
+    }
+
+    /**
+     * Picks the entity with the best (lowest) priority, taking the one closest
+     * to the given position when several share it.
+     */
+    public LivingEntity select(double x, double y, double z, List<LivingEntity> entities) {
+        LivingEntity closest = null;
+        int lowest = Integer.MAX_VALUE;
+        double lowestDistance = Double.MAX_VALUE;
+        for (int i = 0; i < entities.size(); ++i) {
+            LivingEntity entity = entities.get(i);
+            FlagInfo info = get(entity);
+            if (info == null || info.priority() > lowest)
+                continue;
+            net.minecraft.server.Entity handle = ((CraftEntity) entity).getHandle();
+            double dx = handle.locX - x, dy = handle.locY - y, dz = handle.locZ - z;
+            double distance = dx * dx + dy * dy + dz * dz;
+            if (info.priority() < lowest || distance < lowestDistance) {
+                closest = entity;
+                lowest = info.priority();
+                lowestDistance = distance;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Gets the flag that makes the entity a target, or null if it shouldn't
+     * be targeted.
+     */
+    public FlagInfo get(LivingEntity entity) {
+        if (NPCManager.isNPC(entity))
+            return null;
+        CreatureNPC creature = CreatureTask.getCreature(entity);
+        if (creature != null)
+            return creatures.get(creature.getType());
+        if (entity instanceof Player)
+            return getPlayer((Player) entity);
+        EntityType type = entity.getType();
+        return type == null || type.getName() == null ? unnamedMobs : mobs.get(type);
+    }
+
+    private FlagInfo getPlayer(Player player) {
+        String name = player.getName().toLowerCase();
+        FlagInfo info = players.get(name);
+        if (info == null)
+            info = allPlayers;
+        if (info != null && !info.isSafe())
+            return info;
+        if (sortedGroups.length == 0 || !PermissionManager.hasBackend())
+            return null;
+        String[] playerGroups = PermissionManager.getGroupNames(player);
+        if (playerGroups == null)
+            return null;
+        info = null;
+        int best = sortedGroups[0].priority();
+        for (String group : playerGroups) {
+            FlagInfo found = resolve(groups, allGroups, group);
+            if (found != null && (info == null || found.priority() < info.priority())) {
+                info = found;
+                if (info.priority() == best)
+                    break;
+            }
+        }
+        return info;
+    }
+
+    private static FlagInfo resolve(Map<String, FlagInfo> flags, String name) {
+        return resolve(flags, flags.get("all"), name);
+    }
+
+    private static FlagInfo resolve(Map<String, FlagInfo> flags, FlagInfo all, String name) {
+        FlagInfo info = flags.get(name);
+        return targetable(info == null ? all : info);
+    }
+
+    private static FlagInfo targetable(FlagInfo info) {
+        return info == null || info.isSafe() ? null : info;
+    }
+
+    private static <K> void put(Map<K, FlagInfo> map, K key, FlagInfo info) {
+        if (info != null)
+            map.put(key, info);
+    }
+
+    private static final Comparator<FlagInfo> priorityComparer = new Comparator<FlagInfo>() {
+        @Override
+        public int compare(FlagInfo first, FlagInfo other) {
+            int priority = first.priority(), second = other.priority();
+            return second < priority ? 1 : second > priority ? -1 : 0;
+        }
+    };
+}
@@ -3,14 +3,31 @@ package net.citizensnpcs.guards.listeners;
 import net.citizensnpcs.Citizens;
 import net.citizensnpcs.api.event.CitizensEnableEvent;
 import net.citizensnpcs.guards.GuardTask;
+import net.citizensnpcs.resources.npclib.NPCManager;
 
 import org.bukkit.Bukkit;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
 
 public class GuardCitizensListen implements Listener {
     @EventHandler
     public void onCitizensEnable(CitizensEnableEvent event) {
         Bukkit.getServer().getScheduler().scheduleSyncRepeatingTask(Citizens.plugin, new GuardTask(), 0, 1);
     }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityDamage(EntityDamageEvent event) {
+        if (event.isCancelled() || !(event instanceof EntityDamageByEntityEvent)
+                || !(event.getEntity() instanceof Player) || NPCManager.isNPC(event.getEntity()))
+            return;
+        Entity damager = ((EntityDamageByEntityEvent) event).getDamager();
+        if (damager instanceof LivingEntity)
+            GuardTask.onOwnerDamage((Player) event.getEntity(), (LivingEntity) damager);
+    }
 }
\ No newline at end of file
@@ -1,14 +1,13 @@
 package net.citizensnpcs.guards.types;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import net.citizensnpcs.Settings;
 import net.citizensnpcs.api.CitizensManager;
 import net.citizensnpcs.api.event.NPCCreateEvent.NPCCreateReason;
 import net.citizensnpcs.api.event.NPCRemoveEvent.NPCRemoveReason;
 import net.citizensnpcs.guards.Guard;
+import net.citizensnpcs.guards.GuardState;
 import net.citizensnpcs.guards.GuardUpdater;
+import net.citizensnpcs.guards.OwnerCache;
 import net.citizensnpcs.guards.Targeter;
 import net.citizensnpcs.misc.NPCLocation;
 import net.citizensnpcs.npctypes.NPCTypeManager;
@@ -17,25 +16,35 @@ import net.citizensnpcs.resources.npclib.NPCManager;
 import net.citizensnpcs.utils.LocationUtils;
 import net.citizensnpcs.utils.PathUtils;
 
-import org.bukkit.Bukkit;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
-import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 
 public class Bodyguard implements GuardUpdater {
     public Bodyguard() {
         NPCTypeManager.registerEvents(new Listener() {
             @EventHandler
-            public void onPlayerLogin(PlayerLoginEvent event) {
+            public void onPlayerJoin(PlayerJoinEvent event) {
                 Player player = event.getPlayer();
-                String owner = player.getName();
-                if (!toRespawn.containsKey(owner))
-                    return;
-                NPCManager.register(toRespawn.get(owner).getUID(), owner, NPCCreateReason.RESPAWN);
-                CitizensManager.getNPC(toRespawn.get(owner).getUID()).teleport(player.getLocation());
-                toRespawn.remove(owner);
+                OwnerCache.onJoin(player);
+                for (NPCLocation location : toRespawn.removeAll(player.getName().toLowerCase())) {
+                    NPCManager.register(location.getUID(), location.getOwner(), NPCCreateReason.RESPAWN);
+                    CitizensManager.getNPC(location.getUID()).teleport(player.getLocation());
+                }
+            }
+
+            @EventHandler
+            public void onPlayerQuit(PlayerQuitEvent event) {
+                for (HumanNPC npc : OwnerCache.onQuit(event.getPlayer())) {
+                    if (npc.isType("guard") && ((Guard) npc.getType("guard")).isState(GuardState.BODYGUARD))
+                        despawn(npc);
+                }
             }
         });
     }
@@ -58,7 +67,7 @@ public class Bodyguard implements GuardUpdater {
     }
 
     private boolean keepAttacking(HumanNPC npc) {
-        Player owner = Bukkit.getPlayerExact(npc.getOwner());
+        Player owner = OwnerCache.get(npc);
         if (owner == null) {
             despawn(npc);
             return false;
@@ -69,13 +78,13 @@ public class Bodyguard implements GuardUpdater {
     }
 
     private void despawn(HumanNPC npc) {
-        toRespawn.put(npc.getOwner(), new NPCLocation(npc.getLocation(), npc.getUID(), npc.getOwner()));
+        toRespawn.put(npc.getOwner().toLowerCase(), new NPCLocation(npc.getLocation(), npc.getUID(), npc.getOwner()));
         NPCManager.despawn(npc.getUID(), NPCRemoveReason.DEATH);
     }
 
     private boolean findTarget(HumanNPC npc) {
         Guard guard = npc.getType("guard");
-        Player player = Bukkit.getPlayerExact(npc.getOwner());
+        Player player = OwnerCache.get(npc);
         if (player == null) {
             despawn(npc);
             return false;
@@ -83,7 +92,7 @@ public class Bodyguard implements GuardUpdater {
         double range = Settings.getDouble("PathfindingRange");
         if (guard.isAggressive()
                 && LocationUtils.withinRange(npc.getLocation(), player.getLocation(), guard.getProtectionRadius())) {
-            LivingEntity entity = Targeter.findTarget(Targeter.getNearby(player, guard.getProtectionRadius()), npc);
+            LivingEntity entity = Targeter.findTarget(guard.getThreats().getEntities(), npc);
             if (entity != null && !entity.isDead()) {
                 guard.target(entity, npc);
                 return true;
@@ -100,16 +109,22 @@ public class Bodyguard implements GuardUpdater {
     }
 
     private void teleportHome(HumanNPC npc) {
-        Player owner = Bukkit.getServer().getPlayerExact(npc.getOwner());
+        Player owner = OwnerCache.get(npc);
         if (owner != null) {
             npc.teleport(owner.getLocation());
         } else
             despawn(npc);
     }
 
-    private final static Map<String, NPCLocation> toRespawn = new HashMap<String, NPCLocation>();
+    // Owner names in lower case to the bodyguards to respawn when they join.
+    private final static ListMultimap<String, NPCLocation> toRespawn = ArrayListMultimap.create();
 
     @Override
     public void onDamage(HumanNPC npc, LivingEntity attacker) {
     }
+
+    @Override
+    public LivingEntity getWatched(HumanNPC npc) {
+        return OwnerCache.get(npc);
+    }
 }
@@ -21,7 +21,7 @@ public class Bouncer implements GuardUpdater {
         Guard guard = npc.getType("guard");
         if (!guard.isAggressive())
             return false;
-        LivingEntity entity = Targeter.findTarget(Targeter.getNearby(npc.getPlayer(), guard.getProtectionRadius()), npc);
+        LivingEntity entity = Targeter.findTarget(guard.getThreats().getEntities(), npc);
         if (entity != null && LocationUtils.withinRange(entity.getLocation(), npc.getBaseLocation(), guard.getProtectionRadius())) 
         {
             if (entity.isDead())
@@ -51,6 +51,11 @@ public class Bouncer implements GuardUpdater {
         guard.target(attacker, npc);
     }
 
+    @Override
+    public LivingEntity getWatched(HumanNPC npc) {
+        return npc.getPlayer();
+    }
+
     private void startReturning(HumanNPC npc) {
         PathUtils.createPath(npc, npc.getBaseLocation(), -1, Settings.getInt("MaxStationaryReturnTicks"));
     }
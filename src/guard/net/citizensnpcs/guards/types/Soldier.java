@@ -41,6 +41,11 @@ public class Soldier implements GuardUpdater {
     public void onDamage(HumanNPC npc, LivingEntity attacker) {
     }
 
+    @Override
+    public LivingEntity getWatched(HumanNPC npc) {
+        return null;
+    }
+
     private static class SelectionHooks implements Listener {
         @EventHandler
         public void onPlayerQuit(PlayerQuitEvent event) {
@@ -130,13 +130,13 @@ public class Healer extends CitizensNPC {
 
 	@Override
 	public void save(Storage profiles, int UID) {
-		profiles.setInt(UID + ".healer.health", health);
-		profiles.setInt(UID + ".healer.level", level);
+		HealerProperties.health.set(UID, health);
+		HealerProperties.level.set(UID, level);
 	}
 
 	@Override
 	public void load(Storage profiles, int UID) {
-		health = profiles.getInt(UID + ".healer.health", 10);
-		level = profiles.getInt(UID + ".healer.level", 1);
+		health = HealerProperties.health.get(UID);
+		level = HealerProperties.level.get(UID);
 	}
 }
\ No newline at end of file
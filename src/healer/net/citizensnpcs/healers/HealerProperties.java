@@ -7,7 +7,10 @@ import java.util.List;
 import net.citizensnpcs.Settings.SettingsType;
 import net.citizensnpcs.properties.Node;
 import net.citizensnpcs.properties.Properties;
+import net.citizensnpcs.properties.Property;
 import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.properties.PropertySchema;
+import net.citizensnpcs.properties.codec.ScalarCodec;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 
 import com.google.common.collect.Lists;
@@ -43,12 +46,12 @@ public class HealerProperties extends PropertyManager implements Properties {
 
 	@Override
 	public void setEnabled(HumanNPC npc, boolean value) {
-		profiles.setBoolean(npc.getUID() + isHealer, value);
+		isHealer.set(npc.getUID(), value);
 	}
 
 	@Override
 	public boolean isEnabled(HumanNPC npc) {
-		return profiles.getBoolean(npc.getUID() + isHealer);
+		return isHealer.get(npc.getUID());
 	}
 
 	@Override
@@ -77,5 +80,11 @@ public class HealerProperties extends PropertyManager implements Properties {
 	private static final List<String> nodesForCopy = Lists.newArrayList(
 			"healer.toggle", "healer.health", "healer.level");
 
-	private static final String isHealer = ".healer.toggle";
+	private static final PropertySchema schema = new PropertySchema("healer");
+	private static final Property<Boolean> isHealer = schema.add("toggle",
+			ScalarCodec.BOOLEAN, false);
+	static final Property<Integer> health = schema.add("health",
+			ScalarCodec.INTEGER, 10);
+	static final Property<Integer> level = schema.add("level",
+			ScalarCodec.INTEGER, 1);
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package net.citizensnpcs.questers;
+
+import java.util.List;
+import java.util.Map;
+
+import net.citizensnpcs.Citizens;
+import net.citizensnpcs.questers.api.events.BlockMoveEvent;
+import net.citizensnpcs.questers.data.PlayerProfile;
+import net.citizensnpcs.questers.quests.Objective;
+import net.citizensnpcs.questers.quests.progress.ObjectiveProgress;
+import net.citizensnpcs.questers.quests.progress.QuestProgress;
+import net.citizensnpcs.questers.quests.types.LocationQuest;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.player.PlayerMoveEvent;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Filters player moves before they reach quest objectives. Block changes are
+ * added up per player and handed to objectives once per tick as a
+ * {@link BlockMoveEvent}. When location objectives are the only ones
+ * listening for moves, the move events themselves are only passed on while the
+ * player is inside, or has just left, the area around one of them; moves that
+ * only turn the player's head elsewhere then cost a map lookup. Any other
+ * objective listening for moves gets every move. Only accessed from the main
+ * thread.
+ */
+public class MoveTracker {
+    private static final Map<Player, Pending> pending = Maps.newHashMap();
+    private static final Map<Player, Watch> watches = Maps.newHashMap();
+    private static boolean scheduled;
+
+    public static void onMove(PlayerMoveEvent event) {
+        if (event.isCancelled())
+            return;
+        Player player = event.getPlayer();
+        Location from = event.getFrom(), to = event.getTo();
+        boolean sameWorld = from.getWorld() == to.getWorld();
+        int blocks = sameWorld ? Math.abs(to.getBlockX() - from.getBlockX())
+                + Math.abs(to.getBlockY() - from.getBlockY()) + Math.abs(to.getBlockZ() - from.getBlockZ()) : 0;
+        if (blocks > 0 && QuestManager.isWanted(BlockMoveEvent.class))
+            addPending(player, blocks, to);
+        Watch watch = watches.get(player);
+        if (sameWorld && blocks == 0 && watch != null && watch.isCurrent() && !watch.inside && !watch.passAll)
+            return;
+        if (!QuestManager.isWanted(PlayerMoveEvent.class))
+            return;
+        watch = getWatch(player, watch);
+        if (watch == null)
+            return;
+        if (watch.passAll) {
+            QuestManager.incrementQuest(player, event);
+            return;
+        }
+        boolean wasInside = watch.inside;
+        watch.inside = watch.contains(to);
+        // pass on leaving too, so that timed objectives are reset.
+        if (watch.inside || wasInside)
+            QuestManager.incrementQuest(player, event);
+    }
+
+    public static void onQuit(Player player) {
+        pending.remove(player);
+        watches.remove(player);
+    }
+
+    private static void addPending(Player player, int blocks, Location to) {
+        Pending moved = pending.get(player);
+        if (moved == null)
+            pending.put(player, moved = new Pending());
+        moved.blocks += blocks;
+        moved.to = to;
+        if (scheduled)
+            return;
+        scheduled = true;
+        Bukkit.getScheduler().scheduleSyncDelayedTask(Citizens.plugin, new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, 1);
+    }
+
+    private static void flush() {
+        scheduled = false;
+        List<Map.Entry<Player, Pending>> moved = Lists.newArrayList(pending.entrySet());
+        pending.clear();
+        for (Map.Entry<Player, Pending> entry : moved) {
+            Player player = entry.getKey();
+            if (player.isOnline())
+                QuestManager.incrementQuest(player, new BlockMoveEvent(player, entry.getValue().blocks, entry
+                        .getValue().to));
+        }
+    }
+
+    // Gets the player's watched areas, rebuilding them if their objectives
+    // changed since they were built. Returns null if there are none.
+    private static Watch getWatch(Player player, Watch watch) {
+        if (!PlayerProfile.isOnline(player.getName())) {
+            watches.remove(player);
+            return null;
+        }
+        QuestProgress progress = PlayerProfile.getProfile(player.getName()).getProgress();
+        if (progress == null) {
+            watches.remove(player);
+            return null;
+        }
+        if (watch != null && watch.progress == progress && watch.version == progress.getVersion())
+            return watch.size == 0 && !watch.passAll ? null : watch;
+        Watch rebuilt = new Watch(progress);
+        if (watch != null)
+            rebuilt.inside = watch.inside;
+        watches.put(player, rebuilt);
+        return rebuilt.size == 0 && !rebuilt.inside && !rebuilt.passAll ? null : rebuilt;
+    }
+
+    private static class Pending {
+        private int blocks;
+        private Location to;
+    }
+
+    /**
+     * The block boxes around the location objectives of a player's current
+     * quest progress, and whether another of its objectives wants every move.
+     */
+    private static class Watch {
+        private final QuestProgress progress;
+        private final int version;
+        private World[] worlds = new World[0];
+        private int[] bounds = new int[0];
+        private int size;
+        private boolean inside;
+        private boolean passAll;
+
+        Watch(QuestProgress progress) {
+            this.progress = progress;
+            this.version = progress.getVersion();
+            if (progress.getProgress() == null)
+                return;
+            ObjectiveProgress[] objectives = progress.getProgress();
+            worlds = new World[objectives.length];
+            bounds = new int[objectives.length * 4];
+            for (ObjectiveProgress objective : objectives) {
+                if (objective == null)
+                    continue;
+                if (!(objective.getQuestUpdater() instanceof LocationQuest)) {
+                    if (listensForMoves(objective))
+                        passAll = true;
+                    continue;
+                }
+                Objective target = objective.getObjective();
+                Location loc = target.getLocation();
+                if (loc == null || loc.getWorld() == null)
+                    continue;
+                double leeway = LocationQuest.getLeeway(target);
+                worlds[size] = loc.getWorld();
+                bounds[size * 4] = floor(loc.getX() - leeway);
+                bounds[size * 4 + 1] = floor(loc.getX() + leeway);
+                bounds[size * 4 + 2] = floor(loc.getZ() - leeway);
+                bounds[size * 4 + 3] = floor(loc.getZ() + leeway);
+                ++size;
+            }
+        }
+
+        boolean isCurrent() {
+            return version == progress.getVersion();
+        }
+
+        boolean contains(Location loc) {
+            int x = loc.getBlockX(), z = loc.getBlockZ();
+            for (int i = 0; i < size; ++i) {
+                if (worlds[i] == loc.getWorld() && x >= bounds[i * 4] && x <= bounds[i * 4 + 1]
+                        && z >= bounds[i * 4 + 2] && z <= bounds[i * 4 + 3])
+                    return true;
+            }
+            return false;
+        }
+
+        // Compares the types themselves, as PlayerMoveEvent may not have been
+        // given a mask bit yet.
+        private static boolean listensForMoves(ObjectiveProgress objective) {
+            for (Class<? extends Event> type : objective.getEventTypes()) {
+                if (type.isAssignableFrom(PlayerMoveEvent.class))
+                    return true;
+            }
+            return false;
+        }
+
+        private static int floor(double value) {
+            int floored = (int) value;
+            return value < floored ? floored - 1 : floored;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import net.citizensnpcs.questers.api.events.QuestCompleteEvent;
 import net.citizensnpcs.questers.data.PlayerProfile;
 import net.citizensnpcs.questers.quests.CompletedQuest;
 import net.citizensnpcs.questers.quests.Quest;
+import net.citizensnpcs.questers.quests.progress.EventMask;
 import net.citizensnpcs.questers.quests.progress.QuestProgress;
 import net.citizensnpcs.questers.rewards.Requirement;
 import net.citizensnpcs.questers.rewards.Reward;
@@ -25,6 +26,9 @@ import org.bukkit.event.Event;
 
 public class QuestManager {
     private static final Map<String, Quest> quests = new HashMap<String, Quest>();
+    // The event bits wanted by the quest progress of any loaded profile.
+    private static long interest;
+    private static boolean interestChanged = true;
 
     public static void addQuest(Quest quest) {
         quests.put(quest.getName().toLowerCase(), quest);
@@ -79,6 +83,7 @@ public class QuestManager {
         getProfile(player.getName()).setProgress(
                 new QuestProgress(UID, player, questName, System
                         .currentTimeMillis()));
+        getProfile(player.getName()).scheduleSave();
         Messaging.send(player, quest.getAcceptanceText());
         return true;
     }
@@ -114,6 +119,7 @@ public class QuestManager {
         CompletedQuest comp = new CompletedQuest(quest.getName(), UID,
                 completed, elapsed, System.currentTimeMillis());
         profile.addCompletedQuest(comp);
+        profile.scheduleSave();
         Bukkit.getServer().getPluginManager()
                 .callEvent(new QuestCompleteEvent(quest, comp, player));
     }
@@ -135,16 +141,48 @@ public class QuestManager {
                 || (event instanceof Cancellable && ((Cancellable) event)
                         .isCancelled()))
             return;
-        if (hasQuest(player)) {
-            QuestProgress progress = getProfile(player.getName()).getProgress();
-            if (progress.isFullyCompleted())
-                return;
-            progress.updateProgress(player, event);
-            if (progress.isStepCompleted()) {
-                progress.onStepCompletion();
-                progress.cycle();
+        // most events, moves especially, aren't wanted by anyone.
+        long eventMask = EventMask.of(event.getClass());
+        if ((getInterest() & eventMask) == 0)
+            return;
+        PlayerProfile profile = getProfile(player.getName());
+        QuestProgress progress = profile.getProgress();
+        if (progress == null || (progress.getInterest() & eventMask) == 0)
+            return;
+        if (progress.isFullyCompleted())
+            return;
+        progress.updateProgress(player, event, eventMask);
+        if (progress.isStepCompleted()) {
+            progress.onStepCompletion();
+            progress.cycle();
+        }
+        profile.scheduleSave();
+    }
+
+    // Whether any loaded quest progress wants events of the given type.
+    public static boolean isWanted(Class<? extends Event> type) {
+        return (getInterest() & EventMask.of(type)) != 0;
+    }
+
+    private static long getInterest() {
+        if (interestChanged) {
+            interest = 0;
+            for (PlayerProfile profile : PlayerProfile.getOnline()) {
+                if (profile.getProgress() != null)
+                    interest |= profile.getProgress().getInterest();
             }
+            interestChanged = false;
         }
+        return interest;
+    }
+
+    /**
+     * Marks the combined interest of all quest progress as needing to be
+     * recomputed. Called whenever a progress's interest changes or progress
+     * is added or removed.
+     */
+    public static void interestChanged() {
+        interestChanged = true;
     }
 
     public static boolean isValidQuest(String quest) {
@@ -156,7 +194,8 @@ public class QuestManager {
     }
 
     public static void unload(Player player) {
-        if (getProfile(player.getName()) != null) {
+        if (PlayerProfile.isOnline(player.getName())) {
+            // the file is written on the I/O thread.
             getProfile(player.getName()).save();
             getProfile(player.getName()).setProgress(null);
         }
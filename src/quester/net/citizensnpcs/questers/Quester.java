@@ -8,6 +8,7 @@ import net.citizensnpcs.npctypes.CitizensNPC;
 import net.citizensnpcs.npctypes.CitizensNPCType;
 import net.citizensnpcs.properties.Storage;
 import net.citizensnpcs.questers.data.PlayerProfile;
+import net.citizensnpcs.questers.data.QuesterProperties;
 import net.citizensnpcs.questers.quests.Quest;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 import net.citizensnpcs.utils.PageUtils;
@@ -165,15 +166,16 @@ public class Quester extends CitizensNPC {
 
     @Override
     public void save(Storage profiles, int UID) {
-        profiles.setString(UID + ".quester.quests", Joiner.on(";").skipNulls().join(quests));
+        QuesterProperties.quests.set(UID, Joiner.on(";").skipNulls().join(quests));
     }
 
     @Override
     public void load(Storage profiles, int UID) {
-        if (!profiles.keyExists(UID + ".quester.quests"))
+        String stored = QuesterProperties.quests.get(UID);
+        if (stored == null)
             return;
         quests.clear();
-        for (String quest : Splitter.on(";").omitEmptyStrings().split(profiles.getString(UID + ".quester.quests"))) {
+        for (String quest : Splitter.on(";").omitEmptyStrings().split(stored)) {
             addQuest(quest);
         }
     }
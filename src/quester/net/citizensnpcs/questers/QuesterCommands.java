@@ -1,6 +1,5 @@
 package net.citizensnpcs.questers;
 
-import java.io.File;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -9,6 +8,7 @@ import net.citizensnpcs.commands.CommandHandler;
 import net.citizensnpcs.permissions.PermissionManager;
 import net.citizensnpcs.questers.api.events.QuestCancelEvent;
 import net.citizensnpcs.questers.data.PlayerProfile;
+import net.citizensnpcs.questers.data.PlayerProfileCache;
 import net.citizensnpcs.questers.data.QuestProperties;
 import net.citizensnpcs.questers.quests.CompletedQuest;
 import net.citizensnpcs.questers.quests.progress.ObjectiveProgress;
@@ -102,7 +102,7 @@ public class QuesterCommands extends CommandHandler {
         }
         String name = args.getString(1);
         Player other = Bukkit.getServer().getPlayer(args.getString(1));
-        if (other == null && !new File("plugins/Citizens/profiles/" + name + ".yml").exists()) {
+        if (other == null && !PlayerProfileCache.exists(name)) {
             sender.sendMessage(ChatColor.GRAY + "Couldn't find the offline player quest file.");
             return;
         }
@@ -132,20 +132,13 @@ public class QuesterCommands extends CommandHandler {
         String name = args.getString(1).toLowerCase();
         List<PlayerProfile> profiles = Lists.newArrayList();
         if (name.equals("*")) {
-            File dir = new File("plugins/Citizens/profiles/");
-            if (!dir.exists() || !dir.isDirectory()) {
-                sender.sendMessage(ChatColor.GRAY + "Profile directory is non-existent.");
-                return;
-            }
-            for (File file : dir.listFiles()) {
-                if (!file.isFile())
-                    continue;
-                PlayerProfile profile = PlayerProfile.getProfile(file.getName().replace(".yml", ""), false);
+            for (String stored : PlayerProfileCache.getNames()) {
+                PlayerProfile profile = PlayerProfile.getProfile(stored, false);
                 if (profile != null)
                     profiles.add(profile);
             }
         } else {
-            if (!new File("plugins/Citizens/profiles/" + name + ".yml").exists() && !PlayerProfile.isOnline(name)) {
+            if (!PlayerProfileCache.exists(name) && !PlayerProfile.isOnline(name)) {
                 sender.sendMessage(ChatColor.GRAY + "Couldn't find that player.");
                 return;
             }
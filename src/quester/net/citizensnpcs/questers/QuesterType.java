@@ -4,7 +4,9 @@ import net.citizensnpcs.commands.CommandHandler;
 import net.citizensnpcs.npctypes.CitizensNPC;
 import net.citizensnpcs.npctypes.CitizensNPCType;
 import net.citizensnpcs.npctypes.NPCTypeManager;
+import net.citizensnpcs.properties.BackupManager;
 import net.citizensnpcs.properties.Properties;
+import net.citizensnpcs.questers.data.QuestBackupSource;
 import net.citizensnpcs.questers.data.QuestProperties;
 import net.citizensnpcs.questers.data.QuesterProperties;
 import net.citizensnpcs.questers.listeners.QuesterBlockListen;
@@ -27,6 +29,7 @@ public class QuesterType extends CitizensNPCType {
     @Override
     public void registerEvents() {
         QuestProperties.initialize();
+        BackupManager.register(new QuestBackupSource());
         // custom events
         NPCTypeManager.registerEvents(new QuesterCitizensListen());
         NPCTypeManager.registerEvents(new QuesterEntityListen());
@@ -0,0 +1,48 @@
+package net.citizensnpcs.questers.api.events;
+
+import net.citizensnpcs.api.event.CitizensEvent;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+
+/**
+ * The blocks a player has moved across during a tick, added up from their
+ * move events. Only passed to quest objectives; it isn't called through the
+ * plugin manager.
+ */
+public class BlockMoveEvent extends CitizensEvent {
+    private final Player player;
+    private final int blocks;
+    private final Location to;
+
+    public BlockMoveEvent(Player player, int blocks, Location to) {
+        this.player = player;
+        this.blocks = blocks;
+        this.to = to;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    // The number of block boundaries crossed along each axis, added together.
+    public int getBlocks() {
+        return blocks;
+    }
+
+    public Location getTo() {
+        return to;
+    }
+
+    private static final HandlerList handlers = new HandlerList();
+
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+}
@@ -0,0 +1,67 @@
+package net.citizensnpcs.questers.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Stores each profile in its own YAML file.
+ */
+public class FileProfileStore implements ProfileStore {
+    private final File directory;
+
+    public FileProfileStore(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void clear() throws IOException {
+        for (String name : getNames()) {
+            if (!getFile(name).delete())
+                throw new IOException("unable to delete " + getFile(name).getName());
+        }
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return getFile(name).exists();
+    }
+
+    @Override
+    public Collection<String> getNames() {
+        List<String> names = Lists.newArrayList();
+        File[] files = directory.listFiles();
+        if (files == null)
+            return names;
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(".yml"))
+                names.add(file.getName().substring(0, file.getName().length() - 4));
+        }
+        return names;
+    }
+
+    @Override
+    public String read(String name) throws IOException {
+        File file = getFile(name);
+        return file.exists() ? Files.toString(file, Charset.defaultCharset()) : null;
+    }
+
+    @Override
+    public void write(String name, String data) throws IOException {
+        directory.mkdirs();
+        Files.write(data, getFile(name), Charset.defaultCharset());
+    }
+
+    private File getFile(String name) {
+        return new File(directory, name + ".yml");
+    }
+}
@@ -4,7 +4,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
+import net.citizensnpcs.Citizens;
+import net.citizensnpcs.Settings;
 import net.citizensnpcs.properties.ConfigurationHandler;
 import net.citizensnpcs.questers.QuestManager;
 import net.citizensnpcs.questers.quests.CompletedQuest;
@@ -20,12 +23,13 @@ import org.bukkit.material.MaterialData;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class PlayerProfile {
     private static final Map<String, PlayerProfile> profiles = new HashMap<String, PlayerProfile>();
 
     private PlayerProfile(String name) {
-        profile = new ConfigurationHandler("plugins/Citizens/profiles/" + name + ".yml");
+        profile = PlayerProfileCache.get(name);
         this.name = name;
         this.load();
     }
@@ -40,6 +44,7 @@ public class PlayerProfile {
             PlayerProfile profile = new PlayerProfile(name);
             if (register) {
                 profiles.put(name, profile);
+                QuestManager.interestChanged();
             }
             return profile;
         }
@@ -65,26 +70,41 @@ public class PlayerProfile {
         } else {
             profiles.put(name, profile);
         }
+        QuestManager.interestChanged();
     }
 
     public static void saveAll() {
         for (PlayerProfile profile : profiles.values()) {
             profile.save();
         }
+        PlayerProfileCache.flush();
     }
 
     private long lastSave;
     private final ConfigurationHandler profile;
     private final Map<String, CompletedQuest> completedQuests = Maps.newHashMap();
+    private final Set<String> changedCompleted = Sets.newHashSet();
+    private final Set<String> removedCompleted = Sets.newHashSet();
+    private boolean completedCleared;
     private QuestProgress progress;
+    private boolean progressChanged;
+    private int saveTask = -1;
     private final String name;
 
     public void addCompletedQuest(CompletedQuest quest) {
-        completedQuests.put(quest.getName().toLowerCase(), quest);
+        String key = quest.getName().toLowerCase();
+        CompletedQuest old = completedQuests.put(key, quest);
+        if (old != null && !old.getName().equals(quest.getName()))
+            removedCompleted.add(old.getName());
+        changedCompleted.add(key);
     }
 
     public void removeCompletedQuest(String name) {
-        completedQuests.remove(name.toLowerCase());
+        CompletedQuest old = completedQuests.remove(name.toLowerCase());
+        if (old == null)
+            return;
+        removedCompleted.add(old.getName());
+        changedCompleted.remove(name.toLowerCase());
     }
 
     public CompletedQuest getCompletedQuest(String name) {
@@ -93,6 +113,9 @@ public class PlayerProfile {
 
     public void removeAllCompletedQuests() {
         completedQuests.clear();
+        completedCleared = true;
+        removedCompleted.clear();
+        changedCompleted.clear();
     }
 
     public Collection<CompletedQuest> getAllCompleted() {
@@ -109,6 +132,8 @@ public class PlayerProfile {
 
     public void setProgress(QuestProgress progress) {
         this.progress = progress;
+        this.progressChanged = true;
+        QuestManager.interestChanged();
     }
 
     public boolean hasQuest() {
@@ -123,49 +148,107 @@ public class PlayerProfile {
         return Bukkit.getServer().getPlayer(name) != null;
     }
 
+    /**
+     * Saves the profile after QuestSaveDebounce ticks, so that frequent
+     * progress updates are written together.
+     */
+    public void scheduleSave() {
+        if (saveTask != -1)
+            return;
+        saveTask = Bukkit.getScheduler().scheduleSyncDelayedTask(Citizens.plugin, new Runnable() {
+            @Override
+            public void run() {
+                saveTask = -1;
+                if (profiles.get(name) == PlayerProfile.this)
+                    save();
+            }
+        }, Math.max(1, Settings.getInt("QuestSaveDebounce")));
+    }
+
+    private void cancelScheduledSave() {
+        if (saveTask == -1)
+            return;
+        Bukkit.getScheduler().cancelTask(saveTask);
+        saveTask = -1;
+    }
+
+    // Only entries that changed since the last save are written.
     public void save() {
+        cancelScheduledSave();
         this.lastSave = System.currentTimeMillis();
-        if (profile.pathExists("quests.current"))
-            profile.removeKey("quests.current");
-        if (progress != null) {
-            String path = "quests.current", oldPath = path;
-            int count = 0;
+        boolean changed = saveProgress();
+        changed |= saveCompleted();
+        if (changed)
+            PlayerProfileCache.save(name, profile);
+    }
 
+    private boolean saveProgress() {
+        String path = "quests.current";
+        if (progress == null) {
+            if (!progressChanged)
+                return false;
+            progressChanged = false;
+            if (profile.pathExists(path))
+                profile.removeKey(path);
+            return true;
+        }
+        boolean rewrite = progressChanged || progress.isChanged(), changed = rewrite;
+        if (rewrite) {
+            if (profile.pathExists(path))
+                profile.removeKey(path);
             profile.setString(path + ".name", progress.getQuestName());
             profile.setInt(path + ".step", progress.getStep());
             profile.setLong(path + ".start-time", progress.getStartTime());
             profile.setInt(path + ".giver", progress.getQuesterUID());
-            if (progress.getProgress() != null) {
-                for (ObjectiveProgress current : progress.getProgress()) {
-                    path = oldPath + "." + count + ".progress";
-                    if (current == null) {
-                        ++count;
-                        continue;
-                    }
-                    profile.setInt(path + ".amount", current.getAmount());
-                    if (current.getLastItem() != null) {
-                        profile.setInt(path + ".item.id", current.getLastItem().getTypeId());
-                        profile.setInt(path + ".item.amount", current.getLastItem().getAmount());
-                        profile.setInt(path + ".item.data", current.getLastItem().getDurability());
-                    }
-                    if (current.getLastLocation() != null) {
-                        LocationUtils.saveLocation(profile, current.getLastLocation(), path, true);
-                    }
-                    ++count;
+        }
+        if (progress.getProgress() != null) {
+            int count = 0;
+            for (ObjectiveProgress current : progress.getProgress()) {
+                if (current != null && (rewrite || current.isDirty())) {
+                    saveObjective(path + "." + count + ".progress", current);
+                    changed = true;
                 }
+                ++count;
             }
         }
-        if (profile.pathExists("quests.completed"))
-            profile.removeKey("quests.completed");
-        String path = "quests.completed.", temp;
-        for (CompletedQuest quest : this.completedQuests.values()) {
-            temp = path + quest.getName();
+        progress.setChanged(false);
+        progressChanged = false;
+        return changed;
+    }
+
+    private void saveObjective(String path, ObjectiveProgress current) {
+        profile.setInt(path + ".amount", current.getAmount());
+        if (current.getLastItem() != null) {
+            profile.setInt(path + ".item.id", current.getLastItem().getTypeId());
+            profile.setInt(path + ".item.amount", current.getLastItem().getAmount());
+            profile.setInt(path + ".item.data", current.getLastItem().getDurability());
+        }
+        if (current.getLastLocation() != null) {
+            LocationUtils.saveLocation(profile, current.getLastLocation(), path, true);
+        }
+        current.setDirty(false);
+    }
+
+    private boolean saveCompleted() {
+        String path = "quests.completed";
+        boolean changed = completedCleared || !removedCompleted.isEmpty() || !changedCompleted.isEmpty();
+        if (completedCleared && profile.pathExists(path))
+            profile.removeKey(path);
+        for (String removed : removedCompleted) {
+            profile.removeKey(path + "." + removed);
+        }
+        for (String key : changedCompleted) {
+            CompletedQuest quest = completedQuests.get(key);
+            String temp = path + "." + quest.getName();
             profile.setInt(temp + ".completed", quest.getTimesCompleted());
             profile.setLong(temp + ".elapsed", quest.getElapsed());
             profile.setLong(temp + ".finish", quest.getFinishTime());
             profile.setInt(temp + ".quester", quest.getQuesterUID());
         }
-        profile.save();
+        completedCleared = false;
+        removedCompleted.clear();
+        changedCompleted.clear();
+        return changed;
     }
 
     private void load() {
@@ -207,15 +290,31 @@ public class PlayerProfile {
                     }
                     ++count;
                 }
+                progress.updateInterest();
             }
         }
-        if (!profile.pathExists("quests.completed")) {
-            return;
+        if (profile.pathExists("quests.completed")) {
+            for (String key : profile.getKeys("quests.completed")) {
+                path = "quests.completed." + key;
+                addCompletedQuest(new CompletedQuest(key, profile.getInt(path + ".quester"), profile.getInt(path
+                        + ".completed"), profile.getLong(path + ".elapsed"), profile.getLong(path + ".finish")));
+            }
         }
-        for (String key : profile.getKeys("quests.completed")) {
-            path = "quests.completed." + key;
-            addCompletedQuest(new CompletedQuest(key, profile.getInt(path + ".quester"), profile.getInt(path
-                    + ".completed"), profile.getLong(path + ".elapsed"), profile.getLong(path + ".finish")));
+        markSaved();
+    }
+
+    // Everything that was just loaded is already in storage.
+    private void markSaved() {
+        progressChanged = false;
+        changedCompleted.clear();
+        if (progress == null)
+            return;
+        progress.setChanged(false);
+        if (progress.getProgress() != null) {
+            for (ObjectiveProgress objective : progress.getProgress()) {
+                if (objective != null)
+                    objective.setDirty(false);
+            }
         }
     }
 
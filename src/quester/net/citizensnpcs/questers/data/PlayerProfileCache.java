@@ -0,0 +1,332 @@
+package net.citizensnpcs.questers.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import net.citizensnpcs.Settings;
+import net.citizensnpcs.properties.BackupManager;
+import net.citizensnpcs.properties.ConfigurationHandler;
+import net.citizensnpcs.utils.Messaging;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Loads and writes player profiles on a single I/O thread. Profiles are
+ * preloaded while players log in and kept in a bounded LRU after they quit,
+ * so that reconnecting players don't touch the disk at all. Saves hand only
+ * the changed entries to the I/O thread, which applies them to its own copy
+ * of the profile and writes that out.
+ */
+public class PlayerProfileCache {
+    private static final Map<String, Future<ConfigurationHandler>> loading = new MapMaker().expiration(
+            LOAD_EXPIRY, TimeUnit.SECONDS).makeMap();
+    private static final Map<String, ConfigurationHandler> recent = Collections
+            .synchronizedMap(new LinkedHashMap<String, ConfigurationHandler>(16, 0.75F, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ConfigurationHandler> eldest) {
+                    return size() > Math.max(1, Settings.getInt("QuestProfileCacheSize"));
+                }
+            });
+    // The profiles as last written, only accessed from the I/O thread.
+    private static final Map<String, ConfigurationHandler> written = new LinkedHashMap<String, ConfigurationHandler>(
+            16, 0.75F, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ConfigurationHandler> eldest) {
+            return size() > Math.max(1, Settings.getInt("QuestProfileCacheSize"));
+        }
+    };
+    private static ExecutorService executor;
+    private static ProfileStore store;
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null || executor.isShutdown()) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Citizens quest profile I/O");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Starts reading the profile in the background. Safe to call from any
+     * thread.
+     */
+    public static void preload(String name) {
+        final String key = name.toLowerCase();
+        if (recent.containsKey(key) || loading.containsKey(key))
+            return;
+        loading.put(key, submitLoad(key));
+    }
+
+    /**
+     * Gets the storage for the given profile, waiting for a pending preload
+     * or reading it through the I/O thread if needed.
+     */
+    public static ConfigurationHandler get(String name) {
+        String key = name.toLowerCase();
+        ConfigurationHandler storage = recent.get(key);
+        if (storage != null)
+            return storage;
+        Future<ConfigurationHandler> future = loading.remove(key);
+        if (future == null)
+            future = submitLoad(key);
+        try {
+            storage = future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Messaging.log("Unable to load profile for " + name + ": " + ex.getCause(), Level.SEVERE);
+        }
+        if (storage == null)
+            storage = create(key);
+        recent.put(key, storage);
+        return storage;
+    }
+
+    /**
+     * Takes the changes made to the profile since it was last saved and
+     * writes them to the store on the I/O thread. The profile is serialized
+     * there, so the calling thread only pays for the changed entries.
+     */
+    public static void save(String name, ConfigurationHandler storage) {
+        final String key = name.toLowerCase();
+        final List<Object[]> changes = storage.takeChanges();
+        if (changes.isEmpty())
+            return;
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ConfigurationHandler copy = written.get(key);
+                    if (copy == null)
+                        written.put(key, copy = read(key));
+                    copy.apply(changes);
+                    getStore().write(key, copy.saveToString());
+                } catch (IOException ex) {
+                    Messaging.log("Unable to save profile for " + key + ": " + ex.getMessage(), Level.SEVERE);
+                }
+            }
+        });
+    }
+
+    public static boolean exists(final String name) {
+        if (recent.containsKey(name.toLowerCase()))
+            return true;
+        return call(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return getStore().exists(name.toLowerCase());
+            }
+        }, false);
+    }
+
+    public static Collection<String> getNames() {
+        return call(new Callable<Collection<String>>() {
+            @Override
+            public Collection<String> call() {
+                return getStore().getNames();
+            }
+        }, Collections.<String> emptyList());
+    }
+
+    /**
+     * Adds every stored profile to a backup. Called from the backup thread;
+     * profiles are read through the I/O thread.
+     */
+    public static void backup(final BackupManager.Archive archive) throws IOException {
+        IOException error = call(new Callable<IOException>() {
+            @Override
+            public IOException call() {
+                try {
+                    for (String name : getStore().getNames()) {
+                        String data = getStore().read(name);
+                        if (data != null)
+                            archive.add(BACKUP_PREFIX + name + ".yml", data);
+                    }
+                    return null;
+                } catch (IOException ex) {
+                    return ex;
+                }
+            }
+        }, null);
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * Replaces a stored profile with one from a backup. Profiles of players
+     * that are online are overwritten again when they next save.
+     */
+    public static void restore(String name, final String data) throws IOException {
+        final String key = name.toLowerCase();
+        recent.remove(key);
+        loading.remove(key);
+        IOException error = call(new Callable<IOException>() {
+            @Override
+            public IOException call() {
+                try {
+                    written.remove(key);
+                    getStore().write(key, data);
+                    return null;
+                } catch (IOException ex) {
+                    return ex;
+                }
+            }
+        }, null);
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * Deletes every stored profile, before the profiles of a backup are
+     * restored.
+     */
+    public static void clear() throws IOException {
+        recent.clear();
+        loading.clear();
+        IOException error = call(new Callable<IOException>() {
+            @Override
+            public IOException call() {
+                try {
+                    written.clear();
+                    getStore().clear();
+                    return null;
+                } catch (IOException ex) {
+                    return ex;
+                }
+            }
+        }, null);
+        if (error != null)
+            throw error;
+    }
+
+    // Runs a task on the I/O thread and waits for the result.
+    private static <T> T call(Callable<T> callable, T def) {
+        try {
+            return getExecutor().submit(callable).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Messaging.log("Error while accessing quest profiles: " + ex.getCause(), Level.SEVERE);
+        }
+        return def;
+    }
+
+    // Waits for every queued write to finish.
+    public static void flush() {
+        ExecutorService current;
+        synchronized (PlayerProfileCache.class) {
+            current = executor;
+            executor = null;
+        }
+        loading.clear();
+        if (current == null)
+            return;
+        current.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeStore();
+            }
+        });
+        current.shutdown();
+        try {
+            if (!current.awaitTermination(FLUSH_TIMEOUT, TimeUnit.SECONDS))
+                Messaging.log("Timed out waiting for quest profiles to save.", Level.WARNING);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Future<ConfigurationHandler> submitLoad(final String key) {
+        return getExecutor().submit(new Callable<ConfigurationHandler>() {
+            @Override
+            public ConfigurationHandler call() {
+                return create(key);
+            }
+        });
+    }
+
+    // Reads a profile for the main thread, recording the changes it makes.
+    private static ConfigurationHandler create(String key) {
+        ConfigurationHandler storage = read(key);
+        storage.recordChanges();
+        return storage;
+    }
+
+    private static ConfigurationHandler read(String key) {
+        ConfigurationHandler storage = new ConfigurationHandler();
+        try {
+            String data = getStore().read(key);
+            if (data != null)
+                storage.loadFromString(data);
+        } catch (IOException ex) {
+            Messaging.log("Unable to read profile for " + key + ": " + ex.getMessage(), Level.SEVERE);
+        }
+        return storage;
+    }
+
+    // Only called from the I/O thread.
+    private static ProfileStore getStore() {
+        if (store != null)
+            return store;
+        FileProfileStore files = new FileProfileStore(new File(PROFILE_DIRECTORY));
+        if (!Settings.getString("QuestProfileStore").equalsIgnoreCase("segmented"))
+            return store = files;
+        try {
+            SegmentedProfileStore segmented = new SegmentedProfileStore(new File(SEGMENT_DIRECTORY));
+            if (!files.getNames().isEmpty()) {
+                Messaging.log("Migrating quest profiles into " + SEGMENT_DIRECTORY + "...");
+                int count = segmented.migrate(files);
+                File migrated = new File(PROFILE_DIRECTORY + "-migrated");
+                if (!new File(PROFILE_DIRECTORY).renameTo(migrated))
+                    Messaging.log("Unable to move old profiles to " + migrated.getPath() + ".", Level.WARNING);
+                Messaging.log("Migrated " + count + " quest profiles.");
+            }
+            return store = segmented;
+        } catch (IOException ex) {
+            Messaging.log("Unable to open segmented profile store, using YAML files: " + ex.getMessage(),
+                    Level.SEVERE);
+            return store = files;
+        }
+    }
+
+    private static void closeStore() {
+        written.clear();
+        if (store == null)
+            return;
+        try {
+            store.close();
+        } catch (IOException ex) {
+            Messaging.log("Unable to close profile store: " + ex.getMessage(), Level.SEVERE);
+        }
+        store = null;
+    }
+
+    public static final String BACKUP_PREFIX = "profiles/";
+    private static final int FLUSH_TIMEOUT = 30;
+    private static final int LOAD_EXPIRY = 60;
+    private static final String PROFILE_DIRECTORY = "plugins/Citizens/profiles";
+    private static final String SEGMENT_DIRECTORY = "plugins/Citizens/profile-segments";
+}
@@ -0,0 +1,28 @@
+package net.citizensnpcs.questers.data;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Persists serialized player profiles by lower case player name. Stores are
+ * only accessed from the profile I/O thread.
+ * 
+ * @see PlayerProfileCache
+ */
+public interface ProfileStore {
+    public void close() throws IOException;
+
+    // Deletes every stored profile.
+    public void clear() throws IOException;
+
+    public boolean exists(String name);
+
+    public Collection<String> getNames();
+
+    /**
+     * @return the serialized profile, or null if there is none
+     */
+    public String read(String name) throws IOException;
+
+    public void write(String name, String data) throws IOException;
+}
@@ -0,0 +1,55 @@
+package net.citizensnpcs.questers.data;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import net.citizensnpcs.properties.BackupManager;
+import net.citizensnpcs.properties.BackupSource;
+import net.citizensnpcs.properties.SaveScheduler;
+import net.citizensnpcs.properties.StorageBackupSource;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+
+/**
+ * Backs up quests.yml and every stored player profile, whichever profile
+ * store is in use. Restoring a backup that has profiles replaces all of them.
+ */
+public class QuestBackupSource implements BackupSource {
+    private boolean profilesCleared;
+
+    @Override
+    public Task prepare() {
+        final Task quests = StorageBackupSource.snapshot(Lists
+                .<SaveScheduler.Saveable> newArrayList(QuestProperties.getQuests()));
+        return new Task() {
+            @Override
+            public void write(BackupManager.Archive archive) throws IOException {
+                quests.write(archive);
+                PlayerProfileCache.backup(archive);
+            }
+        };
+    }
+
+    @Override
+    public boolean restore(String entry, Reader reader) throws IOException {
+        if (entry.equals(BackupManager.getEntryName(QuestProperties.getQuests().getFile()))) {
+            BackupManager.restoreFile(entry, reader);
+            return true;
+        }
+        String prefix = PlayerProfileCache.BACKUP_PREFIX;
+        if (!entry.startsWith(prefix) || !entry.endsWith(".yml"))
+            return false;
+        if (!profilesCleared) {
+            PlayerProfileCache.clear();
+            profilesCleared = true;
+        }
+        PlayerProfileCache.restore(entry.substring(prefix.length(), entry.length() - 4), CharStreams.toString(reader));
+        return true;
+    }
+
+    @Override
+    public void beginRestore() {
+        profilesCleared = false;
+    }
+}
@@ -14,6 +14,10 @@ public class QuestProperties {
 		QuestFactory.instantiateQuests(quests);
 	}
 
+	public static ConfigurationHandler getQuests() {
+		return quests;
+	}
+
 	public static void save() {
 		quests.save();
 		for (Quest quest : QuestManager.quests()) {
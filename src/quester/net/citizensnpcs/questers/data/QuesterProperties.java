@@ -6,7 +6,10 @@ import java.util.List;
 import net.citizensnpcs.Settings.SettingsType;
 import net.citizensnpcs.properties.Node;
 import net.citizensnpcs.properties.Properties;
+import net.citizensnpcs.properties.Property;
 import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.properties.PropertySchema;
+import net.citizensnpcs.properties.codec.ScalarCodec;
 import net.citizensnpcs.questers.Quester;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 
@@ -18,7 +21,11 @@ public class QuesterProperties extends PropertyManager implements Properties {
 	private QuesterProperties() {
 	}
 
-	private static final String isQuester = ".quester.toggle";
+	private static final PropertySchema schema = new PropertySchema("quester");
+	private static final Property<Boolean> isQuester = schema.add("toggle",
+			ScalarCodec.BOOLEAN, false);
+	public static final Property<String> quests = schema.add("quests",
+			ScalarCodec.STRING, null);
 
 	@Override
 	public void saveState(HumanNPC npc) {
@@ -40,12 +47,12 @@ public class QuesterProperties extends PropertyManager implements Properties {
 
 	@Override
 	public void setEnabled(HumanNPC npc, boolean value) {
-		profiles.setBoolean(npc.getUID() + isQuester, value);
+		isQuester.set(npc.getUID(), value);
 	}
 
 	@Override
 	public boolean isEnabled(HumanNPC npc) {
-		return profiles.getBoolean(npc.getUID() + isQuester);
+		return isQuester.get(npc.getUID());
 	}
 
 	@Override
@@ -53,6 +60,12 @@ public class QuesterProperties extends PropertyManager implements Properties {
 		List<Node> nodes = Lists.newArrayList();
 		nodes.add(new Node("QuestSaveDelay", SettingsType.GENERAL,
 				"quests.save.command-delay-ms", 5000));
+		nodes.add(new Node("QuestProfileCacheSize", SettingsType.GENERAL,
+				"quests.save.profile-cache-size", 100));
+		nodes.add(new Node("QuestSaveDebounce", SettingsType.GENERAL,
+				"quests.save.debounce-ticks", 100));
+		nodes.add(new Node("QuestProfileStore", SettingsType.GENERAL,
+				"quests.save.store", "yaml"));
 		nodes.add(new Node("ItemExploitCheckDelay", SettingsType.GENERAL,
 				"quests.exploits.item-pickup.check-delay", 400));
 		nodes.add(new Node("CombatExploitTimes", SettingsType.GENERAL,
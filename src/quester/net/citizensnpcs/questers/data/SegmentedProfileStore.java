@@ -0,0 +1,338 @@
+package net.citizensnpcs.questers.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import net.citizensnpcs.utils.Messaging;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+
+/**
+ * Packs profiles into a few append-only segment files. Every save appends a
+ * new record and moves the name's index entry to it, so reads and writes are
+ * a single seek. Segments are compacted once most of their space is taken up
+ * by superseded records.
+ */
+public class SegmentedProfileStore implements ProfileStore {
+    private final File directory;
+    private final Map<String, Pointer> index = Maps.newHashMap();
+    private final Map<Integer, RandomAccessFile> segments = Maps.newTreeMap();
+    private int active = -1;
+    private long garbage, total;
+
+    public SegmentedProfileStore(File directory) throws IOException {
+        this.directory = directory;
+        directory.mkdirs();
+        File[] files = directory.listFiles();
+        List<Integer> ids = Lists.newArrayList();
+        for (File file : files == null ? new File[0] : files) {
+            Matcher matcher = SEGMENT_FILE.matcher(file.getName());
+            if (matcher.matches())
+                ids.add(Integer.parseInt(matcher.group(1)));
+        }
+        Collections.sort(ids);
+        for (int i = 0; i < ids.size(); ++i) {
+            int id = ids.get(i);
+            RandomAccessFile segment = new RandomAccessFile(getFile(id), "rw");
+            segments.put(id, segment);
+            scan(id, segment, i == ids.size() - 1);
+            active = id;
+        }
+        if (active == -1)
+            roll();
+        maybeCompact();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (RandomAccessFile segment : segments.values()) {
+            segment.getFD().sync();
+            segment.close();
+        }
+        segments.clear();
+        index.clear();
+    }
+
+    @Override
+    public synchronized void clear() throws IOException {
+        for (Entry<Integer, RandomAccessFile> entry : segments.entrySet()) {
+            entry.getValue().close();
+            if (!getFile(entry.getKey()).delete())
+                throw new IOException("unable to delete " + getFile(entry.getKey()).getName());
+        }
+        segments.clear();
+        index.clear();
+        garbage = total = 0;
+        active = -1;
+        roll();
+    }
+
+    @Override
+    public synchronized boolean exists(String name) {
+        return index.containsKey(name);
+    }
+
+    @Override
+    public synchronized Collection<String> getNames() {
+        return Lists.newArrayList(index.keySet());
+    }
+
+    @Override
+    public synchronized String read(String name) throws IOException {
+        Pointer pointer = index.get(name);
+        if (pointer == null)
+            return null;
+        RandomAccessFile segment = segments.get(pointer.segment);
+        byte[] data = new byte[pointer.length];
+        segment.seek(pointer.offset);
+        int crc = segment.readInt();
+        segment.readFully(data);
+        if (crc != checksum(data))
+            throw new IOException("corrupt profile record for " + name);
+        return new String(data, UTF_8);
+    }
+
+    @Override
+    public synchronized void write(String name, String data) throws IOException {
+        append(name, data.getBytes(UTF_8));
+        maybeCompact();
+    }
+
+    private void append(String name, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length + name.length() + 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeUTF(name);
+        out.writeInt(data.length);
+        int header = out.size();
+        out.writeInt(checksum(data));
+        out.write(data);
+        out.flush();
+
+        RandomAccessFile segment = segments.get(active);
+        if (segment.length() > 0 && segment.length() + bytes.size() > SEGMENT_SIZE) {
+            roll();
+            segment = segments.get(active);
+        }
+        long start = segment.length();
+        segment.seek(start);
+        segment.write(bytes.toByteArray());
+        put(name, new Pointer(active, start + header, data.length, bytes.size()));
+        total += bytes.size();
+    }
+
+    private void put(String name, Pointer pointer) {
+        Pointer old = index.put(name, pointer);
+        if (old != null)
+            garbage += old.size;
+    }
+
+    private void roll() throws IOException {
+        RandomAccessFile previous = segments.get(active);
+        if (previous != null)
+            previous.getFD().sync();
+        int id = active + 1;
+        segments.put(id, new RandomAccessFile(getFile(id), "rw"));
+        active = id;
+    }
+
+    // Reads every record header in a segment. A torn write at the end of the
+    // last segment is truncated; bad data in an older segment is skipped up to
+    // the next record that checks out, leaving the file as it is.
+    private void scan(int id, RandomAccessFile segment, boolean last) throws IOException {
+        long position = 0, length = segment.length();
+        boolean verify = false;
+        while (position < length) {
+            position = scanFrom(id, position, length, verify);
+            if (position >= length)
+                break;
+            if (last) {
+                Messaging.log("Discarding " + (length - position) + " bytes of incomplete profile data in "
+                        + getFile(id).getName() + ".");
+                segment.setLength(position);
+                return;
+            }
+            long next = findMagic(segment, position + 1, length);
+            Messaging.log("Skipping " + (next - position) + " bytes of corrupt profile data in "
+                    + getFile(id).getName() + " at offset " + position + ".");
+            position = next;
+            // a magic number found by searching may just be part of the data.
+            verify = true;
+        }
+    }
+
+    // Indexes records from the given position, returning where the first bad
+    // record starts, or the length if there is none.
+    private long scanFrom(int id, long position, long length, boolean verify) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(getFile(id))));
+        try {
+            skipFully(in, position);
+            while (position < length) {
+                if (in.readInt() != MAGIC)
+                    break;
+                String name = in.readUTF();
+                int size = in.readInt();
+                int header = 4 + 2 + utfLength(name) + 4;
+                long end = position + header + 4 + size;
+                if (size < 0 || end > length)
+                    break;
+                if (verify) {
+                    int crc = in.readInt();
+                    byte[] data = new byte[size];
+                    in.readFully(data);
+                    if (crc != checksum(data))
+                        break;
+                } else
+                    skipFully(in, 4 + size);
+                put(name, new Pointer(id, position + header, size, (int) (end - position)));
+                total += end - position;
+                position = end;
+            }
+        } catch (EOFException ex) {
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+        return position;
+    }
+
+    // Finds the next offset holding the record magic number, or the length.
+    private static long findMagic(RandomAccessFile segment, long from, long length) throws IOException {
+        byte[] buffer = new byte[8192];
+        int window = 0;
+        long position = from;
+        segment.seek(from);
+        while (position < length) {
+            int read = segment.read(buffer, 0, (int) Math.min(buffer.length, length - position));
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; ++i) {
+                window = (window << 8) | (buffer[i] & 0xFF);
+                if (window == MAGIC && position + i + 1 - 4 >= from)
+                    return position + i + 1 - 4;
+            }
+            position += read;
+        }
+        return length;
+    }
+
+    private void maybeCompact() throws IOException {
+        if (garbage < COMPACT_THRESHOLD || garbage * 2 < total)
+            return;
+        Map<Integer, RandomAccessFile> old = Maps.newTreeMap();
+        old.putAll(segments);
+        Map<String, Pointer> live = Maps.newHashMap(index);
+        // copy into fresh segments; on a crash the newer copies simply win.
+        roll();
+        index.clear();
+        garbage = total = 0;
+        for (Entry<String, Pointer> entry : live.entrySet()) {
+            Pointer pointer = entry.getValue();
+            RandomAccessFile segment = old.get(pointer.segment);
+            byte[] data = new byte[pointer.length];
+            segment.seek(pointer.offset + 4);
+            segment.readFully(data);
+            append(entry.getKey(), data);
+        }
+        // the copies must be on disk before the only other ones are deleted.
+        for (Entry<Integer, RandomAccessFile> entry : segments.entrySet()) {
+            if (!old.containsKey(entry.getKey()))
+                entry.getValue().getFD().sync();
+        }
+        for (Entry<Integer, RandomAccessFile> entry : old.entrySet()) {
+            entry.getValue().close();
+            segments.remove(entry.getKey());
+            if (!getFile(entry.getKey()).delete())
+                Messaging.log("Unable to delete old profile segment " + getFile(entry.getKey()).getName() + ".");
+        }
+        Messaging.debug("Compacted " + live.size() + " quest profiles into " + segments.size() + " segments.");
+    }
+
+    private File getFile(int id) {
+        return new File(directory, "segment-" + id + ".dat");
+    }
+
+    private static int checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static void skipFully(DataInputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0)
+                throw new EOFException();
+            bytes -= skipped;
+        }
+    }
+
+    private static int utfLength(String string) {
+        int length = 0;
+        for (int i = 0; i < string.length(); ++i) {
+            char c = string.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                ++length;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else
+                length += 2;
+        }
+        return length;
+    }
+
+    private static class Pointer {
+        private final int segment;
+        private final long offset;
+        private final int length;
+        private final int size;
+
+        Pointer(int segment, long offset, int length, int size) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Copies every profile from another store that this store doesn't already
+     * contain.
+     * 
+     * @return the number of profiles copied
+     */
+    public synchronized int migrate(ProfileStore from) throws IOException {
+        int count = 0;
+        for (String name : from.getNames()) {
+            String data = from.read(name);
+            if (data == null || index.containsKey(name.toLowerCase()))
+                continue;
+            append(name.toLowerCase(), data.getBytes(UTF_8));
+            ++count;
+        }
+        return count;
+    }
+
+    private static final long COMPACT_THRESHOLD = 8 * 1024 * 1024;
+    private static final int MAGIC = 0x43505246;
+    private static final long SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("^segment-([0-9]+)\\.dat$");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+}
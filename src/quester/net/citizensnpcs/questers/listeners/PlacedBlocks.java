@@ -0,0 +1,219 @@
+package net.citizensnpcs.questers.listeners;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import net.citizensnpcs.Citizens;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+
+/**
+ * Remembers blocks placed by players for a while, so that breaking them again
+ * doesn't count towards quests. Blocks are kept as packed coordinates in a
+ * set per chunk and are forgotten by a timing wheel that a single task turns
+ * every tick. Only accessed from the main thread.
+ */
+public class PlacedBlocks {
+    private static final Map<World, Map<Long, LongSet>> worlds = new MapMaker().weakKeys().makeMap();
+    private static final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+    private static long tick;
+    private static boolean started;
+
+    public static boolean contains(Block block) {
+        Map<Long, LongSet> chunks = worlds.get(block.getWorld());
+        if (chunks == null)
+            return false;
+        LongSet set = chunks.get(chunkKey(block.getX() >> 4, block.getZ() >> 4));
+        return set != null && set.contains(pack(block.getX(), block.getY(), block.getZ()));
+    }
+
+    /**
+     * Remembers the block for the given number of ticks.
+     */
+    public static void add(Block block, int ticks) {
+        World world = block.getWorld();
+        Map<Long, LongSet> chunks = worlds.get(world);
+        if (chunks == null)
+            worlds.put(world, chunks = Maps.newHashMap());
+        Long chunk = chunkKey(block.getX() >> 4, block.getZ() >> 4);
+        LongSet set = chunks.get(chunk);
+        if (set == null)
+            chunks.put(chunk, set = new LongSet());
+        long key = pack(block.getX(), block.getY(), block.getZ());
+        set.add(key);
+
+        ticks = Math.max(1, ticks);
+        int slot = (int) ((tick + ticks) & (WHEEL_SIZE - 1));
+        if (wheel[slot] == null)
+            wheel[slot] = new Bucket();
+        wheel[slot].add(world, key, (ticks - 1) / WHEEL_SIZE);
+        start();
+    }
+
+    private static void remove(World world, long key) {
+        Map<Long, LongSet> chunks = worlds.get(world);
+        if (chunks == null)
+            return;
+        Long chunk = chunkKey(unpackX(key) >> 4, unpackZ(key) >> 4);
+        LongSet set = chunks.get(chunk);
+        if (set == null)
+            return;
+        set.remove(key);
+        if (set.isEmpty())
+            chunks.remove(chunk);
+    }
+
+    private static void start() {
+        if (started)
+            return;
+        started = true;
+        Bukkit.getScheduler().scheduleSyncRepeatingTask(Citizens.plugin, new Runnable() {
+            @Override
+            public void run() {
+                Bucket bucket = wheel[(int) (++tick & (WHEEL_SIZE - 1))];
+                if (bucket != null)
+                    bucket.expire();
+            }
+        }, 1, 1);
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((long) (x & COORD_MASK) << 38) | ((long) (z & COORD_MASK) << 12) | (y & Y_MASK);
+    }
+
+    private static int unpackX(long key) {
+        // shift the sign bit of the 26 bit value into place and back.
+        return (int) (key >>> 38) << 6 >> 6;
+    }
+
+    private static int unpackZ(long key) {
+        return (int) ((key >>> 12) & COORD_MASK) << 6 >> 6;
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The blocks due to be forgotten when the wheel reaches a slot, each with
+     * the number of further turns to wait.
+     */
+    private static class Bucket {
+        private World[] worlds = new World[8];
+        private long[] keys = new long[8];
+        private int[] rounds = new int[8];
+        private int size;
+
+        void add(World world, long key, int round) {
+            if (size == keys.length) {
+                worlds = Arrays.copyOf(worlds, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+                rounds = Arrays.copyOf(rounds, size * 2);
+            }
+            worlds[size] = world;
+            keys[size] = key;
+            rounds[size] = round;
+            ++size;
+        }
+
+        void expire() {
+            int kept = 0;
+            for (int i = 0; i < size; ++i) {
+                if (rounds[i] == 0) {
+                    remove(worlds[i], keys[i]);
+                    continue;
+                }
+                worlds[kept] = worlds[i];
+                keys[kept] = keys[i];
+                rounds[kept] = rounds[i] - 1;
+                ++kept;
+            }
+            Arrays.fill(worlds, kept, size, null);
+            size = kept;
+        }
+    }
+
+    /**
+     * An open addressing set of longs using linear probing.
+     */
+    private static class LongSet {
+        private long[] keys = new long[16];
+        private boolean[] used = new boolean[16];
+        private int size;
+
+        boolean contains(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key)
+                    return true;
+            }
+            return false;
+        }
+
+        void add(long key) {
+            if ((size + 1) * 4 > keys.length * 3)
+                resize(keys.length * 2);
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            for (; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key)
+                    return;
+            }
+            keys[i] = key;
+            used[i] = true;
+            ++size;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            for (; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key)
+                    break;
+            }
+            if (!used[i])
+                return;
+            used[i] = false;
+            --size;
+            // move later entries of the same run back into the gap.
+            for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    used[i] = true;
+                    used[j] = false;
+                    i = j;
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            keys = new long[capacity];
+            used = new boolean[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldUsed[i])
+                    add(oldKeys[i]);
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int COORD_MASK = (1 << 26) - 1, Y_MASK = (1 << 12) - 1;
+}
@@ -1,27 +1,17 @@
 package net.citizensnpcs.questers.listeners;
 
-import java.util.Set;
-
-import net.citizensnpcs.Citizens;
 import net.citizensnpcs.Settings;
 import net.citizensnpcs.questers.QuestManager;
 
-import org.bukkit.Bukkit;
-import org.bukkit.Location;
-import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 
-import com.google.common.collect.Sets;
-
 public class QuesterBlockListen implements Listener {
-    private static final Set<Location> placed = Sets.newHashSet();
-
     @EventHandler
     public void onBlockBreak(BlockBreakEvent event) {
-        if (placed.contains(event.getBlock().getLocation())) {
+        if (PlacedBlocks.contains(event.getBlock())) {
             return;
         }
         QuestManager.incrementQuest(event.getPlayer(), event);
@@ -29,24 +19,7 @@ public class QuesterBlockListen implements Listener {
 
     @EventHandler
     public void onBlockPlace(BlockPlaceEvent event) {
-        placed.add(event.getBlock().getLocation());
-        Bukkit.getScheduler().scheduleSyncDelayedTask(Citizens.plugin, new RemoveBlockTask(event.getBlock()),
-                Settings.getInt("BlockTrackingRemoveDelay"));
+        PlacedBlocks.add(event.getBlock(), Settings.getInt("BlockTrackingRemoveDelay"));
         QuestManager.incrementQuest(event.getPlayer(), event);
     }
-
-    private static class RemoveBlockTask implements Runnable {
-        private final Location location;
-
-        RemoveBlockTask(Block block) {
-            this.location = block.getLocation();
-        }
-
-        @Override
-        public void run() {
-            synchronized (placed) {
-                placed.remove(location);
-            }
-        }
-    }
-}
\ No newline at end of file
+}
@@ -10,6 +10,8 @@ import net.citizensnpcs.questers.data.PlayerProfile;
 import net.citizensnpcs.questers.data.QuestProperties;
 import net.citizensnpcs.utils.Messaging;
 
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 
@@ -17,6 +19,9 @@ public class QuesterCitizensListen implements Listener {
     @EventHandler
     public void onCitizensEnable(CitizensEnableEvent event) {
         Messaging.log("Loaded " + QuestManager.quests().size() + " quests.");
+        for (Player player : Bukkit.getServer().getOnlinePlayers()) {
+            PlayerProfile.getProfile(player.getName());
+        }
     }
 
     @EventHandler
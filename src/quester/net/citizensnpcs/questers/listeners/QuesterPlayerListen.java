@@ -1,20 +1,38 @@
 package net.citizensnpcs.questers.listeners;
 
+import net.citizensnpcs.questers.MoveTracker;
 import net.citizensnpcs.questers.QuestManager;
+import net.citizensnpcs.questers.data.PlayerProfile;
+import net.citizensnpcs.questers.data.PlayerProfileCache;
 
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerChatEvent;
 import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerPickupItemEvent;
+import org.bukkit.event.player.PlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 public class QuesterPlayerListen implements Listener {
+    // called off the main thread while the player logs in.
+    @EventHandler
+    public void onPlayerPreLogin(PlayerPreLoginEvent event) {
+        if (event.getResult() == PlayerPreLoginEvent.Result.ALLOWED)
+            PlayerProfileCache.preload(event.getName());
+    }
+
+    // quest events are only looked at for loaded profiles, so load it now.
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        PlayerProfile.getProfile(event.getPlayer().getName());
+    }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         QuestManager.unload(event.getPlayer());
+        MoveTracker.onQuit(event.getPlayer());
     }
 
     @EventHandler
@@ -29,7 +47,7 @@ public class QuesterPlayerListen implements Listener {
 
     @EventHandler
     public void onPlayerMove(PlayerMoveEvent event) {
-        QuestManager.incrementQuest(event.getPlayer(), event);
+        MoveTracker.onMove(event);
     }
 
     @EventHandler
@@ -0,0 +1,79 @@
+package net.citizensnpcs.questers.quests.progress;
+
+import java.util.Map;
+
+import org.bukkit.event.Event;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Gives every event type that objectives listen for its own bit, so that the
+ * objectives interested in an event can be found with a mask test rather than
+ * an isAssignableFrom check per objective. Only accessed from the main thread.
+ */
+public class EventMask {
+    private static final Map<Class<?>, Long> typeBits = Maps.newHashMap();
+    // Event class to the bits of every type it is assignable to.
+    private static final Map<Class<?>, Long> eventMasks = Maps.newHashMap();
+    private static int nextBit = FIRST_BIT;
+
+    /**
+     * Gets the bits of the given types, giving a bit to any type that doesn't
+     * have one yet.
+     */
+    public static long of(Class<? extends Event>[] types) {
+        long mask = 0;
+        for (Class<? extends Event> type : types) {
+            Long bit = typeBits.get(type);
+            if (bit == null) {
+                bit = 1L << nextBit;
+                if (nextBit < OVERFLOW)
+                    ++nextBit;
+                typeBits.put(type, bit);
+                eventMasks.clear();
+            }
+            mask |= bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the bits of every type that events of the given class are an
+     * instance of. Always includes {@link #ANY}.
+     */
+    public static long of(Class<? extends Event> eventClass) {
+        Long mask = eventMasks.get(eventClass);
+        if (mask == null) {
+            long bits = ANY;
+            for (Map.Entry<Class<?>, Long> entry : typeBits.entrySet()) {
+                if (entry.getKey().isAssignableFrom(eventClass))
+                    bits |= entry.getValue();
+            }
+            eventMasks.put(eventClass, mask = bits);
+        }
+        return mask;
+    }
+
+    /**
+     * Checks whether an objective listening for the given types with the given
+     * bits is interested in an event.
+     */
+    static boolean matches(long mask, Class<? extends Event>[] types, Event event, long eventMask) {
+        if ((mask & eventMask) == 0)
+            return false;
+        if ((mask & OVERFLOW_BIT) == 0)
+            return true;
+        // types past the last bit share it, so check them properly.
+        for (Class<? extends Event> type : types) {
+            if (type.isAssignableFrom(event.getClass()))
+                return true;
+        }
+        return false;
+    }
+
+    // Set in the mask of every event, for progress that wants to hear of any.
+    public static final long ANY = 1L;
+    public static final long ALL = ~0L;
+    private static final int FIRST_BIT = 1, OVERFLOW = 63;
+    private static final long OVERFLOW_BIT = 1L << OVERFLOW;
+}
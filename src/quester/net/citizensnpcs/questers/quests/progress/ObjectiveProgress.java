@@ -15,9 +15,11 @@ public class ObjectiveProgress {
     private final Player player;
     private final QuestUpdater questUpdater;
     private final String questName;
+    private final long eventMask;
     private int amountCompleted = 0;
     private ItemStack lastItem;
     private Location lastLocation;
+    private boolean dirty = true;
 
     public ObjectiveProgress(int UID, Player player, String questName, Objective objective) {
         this.UID = UID;
@@ -25,6 +27,7 @@ public class ObjectiveProgress {
         this.questName = questName;
         this.objective = objective;
         this.questUpdater = QuestAPI.getObjective(objective.getType());
+        this.eventMask = EventMask.of(questUpdater.getEventTypes());
     }
 
     public boolean update(Event event) {
@@ -35,6 +38,15 @@ public class ObjectiveProgress {
         return this.questUpdater.getEventTypes();
     }
 
+    // The bits of the event types this listens for.
+    public long getEventMask() {
+        return eventMask;
+    }
+
+    public boolean isInterested(Event event, long eventMask) {
+        return EventMask.matches(this.eventMask, getEventTypes(), event, eventMask);
+    }
+
     public int getQuesterUID() {
         return UID;
     }
@@ -51,7 +63,7 @@ public class ObjectiveProgress {
         if (this.getObjective().getAmount() - this.getAmount() > 0)
             this.setAmountCompleted(this.getAmount() + 1);
         else
-            this.amountCompleted = this.objective.getAmount();
+            this.setAmountCompleted(this.objective.getAmount());
     }
 
     public int getAmount() {
@@ -59,11 +71,14 @@ public class ObjectiveProgress {
     }
 
     public void setAmountCompleted(int amountCompleted) {
+        if (this.amountCompleted != amountCompleted)
+            this.dirty = true;
         this.amountCompleted = amountCompleted;
     }
 
     public void setLastItem(ItemStack lastItem) {
         this.lastItem = lastItem;
+        this.dirty = true;
     }
 
     public ItemStack getLastItem() {
@@ -72,6 +87,16 @@ public class ObjectiveProgress {
 
     public void setLastLocation(Location lastLocation) {
         this.lastLocation = lastLocation;
+        this.dirty = true;
+    }
+
+    // Whether this has changed since it was last saved.
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
     }
 
     public Location getLastLocation() {
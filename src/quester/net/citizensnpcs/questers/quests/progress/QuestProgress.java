@@ -13,6 +13,9 @@ public class QuestProgress {
     private final long startTime;
     private final int UID;
     private final Player player;
+    private boolean changed = true;
+    private long interest;
+    private int version;
 
     public QuestProgress(int UID, Player player, String questName, long startTime) {
         this.UID = UID;
@@ -23,6 +26,36 @@ public class QuestProgress {
         addObjectives();
     }
 
+    // Recomputes the events this progress can make use of. Needs to be called
+    // after changing the array returned by getProgress().
+    public void updateInterest() {
+        ++version;
+        long interest = 0;
+        if (isStepCompleted()) {
+            // the step moves on at the next event of any kind.
+            interest = this.objectives.isCompleted() ? 0 : EventMask.ALL;
+        } else {
+            for (ObjectiveProgress prog : progress) {
+                if (prog != null)
+                    interest |= prog.getEventMask();
+            }
+        }
+        if (this.interest != interest) {
+            this.interest = interest;
+            QuestManager.interestChanged();
+        }
+    }
+
+    // Changes whenever the set of live objectives may have changed.
+    public int getVersion() {
+        return version;
+    }
+
+    // Gets the bits of the event types that the current objectives want.
+    public long getInterest() {
+        return interest;
+    }
+
     public void cycle() {
         next();
         if (!this.objectives.isCompleted()) {
@@ -33,17 +66,22 @@ public class QuestProgress {
     private void next() {
         this.progress = null;
         this.objectives.cycle();
+        this.changed = true;
+        updateInterest();
     }
 
     private void addObjectives() {
-        if (objectives.current().objectives().size() == 0)
+        if (objectives.current().objectives().size() == 0) {
+            updateInterest();
             return;
+        }
         int size = objectives.current().objectives().size();
         this.progress = new ObjectiveProgress[size];
         while (objectives.hasNext()) {
             this.progress[objectives.index()] = new ObjectiveProgress(UID, player, questName,
                     objectives.nextObjective());
         }
+        updateInterest();
     }
 
     public int getStep() {
@@ -72,28 +110,30 @@ public class QuestProgress {
     }
 
     public void updateProgress(Player player, Event event) {
-        if (progress == null)
+        updateProgress(player, event, EventMask.of(event.getClass()));
+    }
+
+    public void updateProgress(Player player, Event event, long eventMask) {
+        if (progress == null || (interest & eventMask) == 0)
             return;
+        boolean completed = false;
         for (int i = 0; i < progress.length; ++i) {
             if (progress[i] == null) {
                 continue;
             }
             ObjectiveProgress progress = this.progress[i];
-            boolean cont = true;
-            for (Class<? extends Event> type : progress.getEventTypes()) {
-                if (type.isAssignableFrom(event.getClass())) {
-                    cont = false;
-                    break;
-                }
-            }
-            if (cont) {
+            if (!progress.isInterested(event, eventMask)) {
                 continue;
             }
             if (progress.update(event)) {
                 progress.getObjective().onCompletion(player, this);
                 this.progress[i] = null;
+                this.changed = true;
+                completed = true;
             }
         }
+        if (completed)
+            updateInterest();
     }
 
     public int getQuesterUID() {
@@ -112,6 +152,15 @@ public class QuestProgress {
         return progress;
     }
 
+    // Whether the step or the set of objectives changed since the last save.
+    public boolean isChanged() {
+        return changed;
+    }
+
+    public void setChanged(boolean changed) {
+        this.changed = changed;
+    }
+
     public void onStepCompletion() {
         this.objectives.current().onCompletion(player, this);
     }
@@ -1,29 +1,21 @@
 package net.citizensnpcs.questers.quests.types;
 
 import net.citizensnpcs.questers.QuestUtils;
+import net.citizensnpcs.questers.api.events.BlockMoveEvent;
 import net.citizensnpcs.questers.quests.progress.ObjectiveProgress;
 import net.citizensnpcs.questers.quests.progress.QuestUpdater;
 import net.citizensnpcs.utils.StringUtils;
 
-import org.bukkit.Location;
 import org.bukkit.event.Event;
-import org.bukkit.event.player.PlayerMoveEvent;
 
 public class DistanceQuest implements QuestUpdater {
-    private static final Class<? extends Event>[] EVENTS = new Class[] { PlayerMoveEvent.class };
+    private static final Class<? extends Event>[] EVENTS = new Class[] { BlockMoveEvent.class };
 
     @Override
     public boolean update(Event event, ObjectiveProgress progress) {
-        if (event instanceof PlayerMoveEvent) {
-            PlayerMoveEvent ev = (PlayerMoveEvent) event;
-            Location from = ev.getFrom(), to = ev.getTo();
-            if (!(from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY() && from.getBlockZ() == to
-                    .getBlockZ())) {
-                int x = Math.abs(to.getBlockX() - from.getBlockX());
-                int y = Math.abs(to.getBlockY() - from.getBlockY());
-                int z = Math.abs(to.getBlockZ() - from.getBlockZ());
-                progress.addAmount(x + y + z);
-            }
+        if (event instanceof BlockMoveEvent) {
+            int blocks = ((BlockMoveEvent) event).getBlocks();
+            progress.setAmountCompleted(Math.min(progress.getAmount() + blocks, progress.getObjective().getAmount()));
         }
         return progress.getAmount() >= progress.getObjective().getAmount();
     }
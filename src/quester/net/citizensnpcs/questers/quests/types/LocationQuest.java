@@ -26,8 +26,7 @@ public class LocationQuest implements QuestUpdater {
         if (event instanceof PlayerMoveEvent) {
             PlayerMoveEvent ev = (PlayerMoveEvent) event;
             Objective objective = progress.getObjective();
-            double leeway = objective.hasParameter("leeway") ? objective.getParameter("leeway").getDouble() : objective
-                    .getAmount();
+            double leeway = getLeeway(objective);
             if (LocationUtils.withinRange(ev.getTo(), objective.getLocation(), leeway)
                     && withinYawRange(ev.getTo(), objective)) {
                 if (!objective.hasParameter("time"))
@@ -39,6 +38,10 @@ public class LocationQuest implements QuestUpdater {
         return false;
     }
 
+    public static double getLeeway(Objective objective) {
+        return objective.hasParameter("leeway") ? objective.getParameter("leeway").getDouble() : objective.getAmount();
+    }
+
     private boolean withinYawRange(Location to, Objective objective) {
         if (objective.getLocation().getYaw() == 0 && objective.getLocation().getPitch() == 0)
             return true;
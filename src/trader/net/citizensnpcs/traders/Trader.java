@@ -91,10 +91,10 @@ public class Trader extends CitizensNPC {
 
     @Override
     public void load(Storage profiles, int UID) {
-        unlimited = profiles.getBoolean(UID + ".trader.unlimited");
-        locked = profiles.getBoolean(UID + ".trader.locked");
-        useGlobalBuy = profiles.getBoolean(UID + ".trader.use-global.buy", true);
-        useGlobalSell = profiles.getBoolean(UID + ".trader.use-global.sell", true);
+        unlimited = TraderProperties.unlimited.get(UID);
+        locked = TraderProperties.locked.get(UID);
+        useGlobalBuy = TraderProperties.useGlobalBuy.get(UID);
+        useGlobalSell = TraderProperties.useGlobalSell.get(UID);
     }
 
     @Override
@@ -139,11 +139,11 @@ public class Trader extends CitizensNPC {
 
     @Override
     public void save(Storage profiles, int UID) {
-        profiles.setBoolean(UID + ".trader.unlimited", unlimited);
-        profiles.setBoolean(UID + ".trader.locked", locked);
-        profiles.setBoolean(UID + ".trader.use-global.sell", useGlobalSell);
-        profiles.setBoolean(UID + ".trader.use-global.buy", useGlobalBuy);
-        profiles.setString(UID + ".trader.stock", Joiner.on(";").join(stocking.values()));
+        TraderProperties.unlimited.set(UID, unlimited);
+        TraderProperties.locked.set(UID, locked);
+        TraderProperties.useGlobalSell.set(UID, useGlobalSell);
+        TraderProperties.useGlobalBuy.set(UID, useGlobalBuy);
+        TraderProperties.stock.set(UID, Joiner.on(";").join(stocking.values()));
     }
 
     public void setFree() {
@@ -6,7 +6,10 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import net.citizensnpcs.properties.Node;
 import net.citizensnpcs.properties.Properties;
+import net.citizensnpcs.properties.Property;
 import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.properties.PropertySchema;
+import net.citizensnpcs.properties.codec.ScalarCodec;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 
 import org.bukkit.inventory.ItemStack;
@@ -14,8 +17,19 @@ import org.bukkit.inventory.ItemStack;
 import com.google.common.collect.Lists;
 
 public class TraderProperties extends PropertyManager implements Properties {
-	private static final String isTrader = ".trader.toggle";
-	private static final String stock = ".trader.stock";
+	private static final PropertySchema schema = new PropertySchema("trader");
+	private static final Property<Boolean> isTrader = schema.add("toggle",
+			ScalarCodec.BOOLEAN, false);
+	static final Property<String> stock = schema.add("stock",
+			ScalarCodec.STRING, "");
+	static final Property<Boolean> unlimited = schema.add("unlimited",
+			ScalarCodec.BOOLEAN, false);
+	static final Property<Boolean> locked = schema.add("locked",
+			ScalarCodec.BOOLEAN, false);
+	static final Property<Boolean> useGlobalBuy = schema.add(
+			"use-global.buy", ScalarCodec.BOOLEAN, true);
+	static final Property<Boolean> useGlobalSell = schema.add(
+			"use-global.sell", ScalarCodec.BOOLEAN, true);
 
 	public static final TraderProperties INSTANCE = new TraderProperties();
 
@@ -25,7 +39,7 @@ public class TraderProperties extends PropertyManager implements Properties {
 	private Map<Check, Stockable> getStockables(int UID) {
 		Map<Check, Stockable> stockables = new ConcurrentHashMap<Check, Stockable>();
 		int i = 0;
-		label: for (String s : profiles.getString(UID + stock).split(";")) {
+		label: for (String s : stock.get(UID).split(";")) {
 			if (s.isEmpty()) {
 				continue;
 			}
@@ -88,12 +102,12 @@ public class TraderProperties extends PropertyManager implements Properties {
 
 	@Override
 	public void setEnabled(HumanNPC npc, boolean value) {
-		profiles.setBoolean(npc.getUID() + isTrader, value);
+		isTrader.set(npc.getUID(), value);
 	}
 
 	@Override
 	public boolean isEnabled(HumanNPC npc) {
-		return profiles.getBoolean(npc.getUID() + isTrader);
+		return isTrader.get(npc.getUID());
 	}
 
 	@Override
@@ -224,27 +224,29 @@ public class Wizard extends CitizensNPC {
 
     @Override
     public void save(Storage profiles, int UID) {
-        profiles.setBoolean(UID + ".wizard.unlimited-mana", unlimitedMana);
-        profiles.setString(UID + ".wizard.time", time);
-        profiles.setString(UID + ".wizard.mode", mode.name());
-        profiles.setInt(UID + ".wizard.mana", mana);
-        profiles.setString(UID + ".wizard.locations", Joiner.on(":").skipNulls().join(locations));
-        profiles.setString(UID + ".wizard.mob", mob.name());
+        WizardProperties.unlimitedMana.set(UID, unlimitedMana);
+        WizardProperties.time.set(UID, time);
+        WizardProperties.mode.set(UID, mode.name());
+        WizardProperties.mana.set(UID, mana);
+        WizardProperties.locations.set(UID, Joiner.on(":").skipNulls().join(locations));
+        WizardProperties.mob.set(UID, mob.name());
     }
 
     @Override
     public void load(Storage profiles, int UID) {
-        unlimitedMana = profiles.getBoolean(UID + ".wizard.unlimited-mana");
-        time = profiles.getString(UID + ".wizard.time", "morning");
-        mode = (profiles.keyExists(UID + ".wizard.mode") && WizardMode.parse(profiles.getString(UID + ".wizard.mode")) != null) ? WizardMode
-                .parse(profiles.getString(UID + ".wizard.mode")) : WizardMode.TELEPORT;
-        mana = profiles.getInt(UID + ".wizard.mana", 10);
+        unlimitedMana = WizardProperties.unlimitedMana.get(UID);
+        time = WizardProperties.time.get(UID);
+        mode = WizardMode.parse(WizardProperties.mode.get(UID));
+        if (mode == null)
+            mode = WizardMode.TELEPORT;
+        mana = WizardProperties.mana.get(UID);
         locations.clear();
-        for (String location : splitter.split(profiles.getString(UID + ".wizard.locations"))) {
+        for (String location : splitter.split(WizardProperties.locations.get(UID))) {
             locations.add(location.replace("(", "").replace(")", ""));
         }
-        mob = (EntityType.fromName(profiles.getString(UID + ".wizard.mob")) != null) ? EntityType.fromName(profiles
-                .getString(UID + ".wizard.mob")) : EntityType.CREEPER;
+        mob = EntityType.fromName(WizardProperties.mob.get(UID));
+        if (mob == null)
+            mob = EntityType.CREEPER;
         mobIndex = mob.ordinal();
     }
 
@@ -7,7 +7,10 @@ import java.util.List;
 import net.citizensnpcs.Settings.SettingsType;
 import net.citizensnpcs.properties.Node;
 import net.citizensnpcs.properties.Properties;
+import net.citizensnpcs.properties.Property;
 import net.citizensnpcs.properties.PropertyManager;
+import net.citizensnpcs.properties.PropertySchema;
+import net.citizensnpcs.properties.codec.ScalarCodec;
 import net.citizensnpcs.resources.npclib.HumanNPC;
 
 import com.google.common.collect.Lists;
@@ -43,12 +46,12 @@ public class WizardProperties extends PropertyManager implements Properties {
 
 	@Override
 	public void setEnabled(HumanNPC npc, boolean value) {
-		profiles.setBoolean(npc.getUID() + isWizard, value);
+		isWizard.set(npc.getUID(), value);
 	}
 
 	@Override
 	public boolean isEnabled(HumanNPC npc) {
-		return profiles.getBoolean(npc.getUID() + isWizard);
+		return isWizard.get(npc.getUID());
 	}
 
 	@Override
@@ -94,5 +97,19 @@ public class WizardProperties extends PropertyManager implements Properties {
 			"wizard.toggle", "wizard.locations", "wizard.mana", "wizard.mode",
 			"wizard.time", "wizard.mob", "wizard.unlimited-mana");
 
-	private static final String isWizard = ".wizard.toggle";
+	private static final PropertySchema schema = new PropertySchema("wizard");
+	private static final Property<Boolean> isWizard = schema.add("toggle",
+			ScalarCodec.BOOLEAN, false);
+	static final Property<Boolean> unlimitedMana = schema.add(
+			"unlimited-mana", ScalarCodec.BOOLEAN, false);
+	static final Property<String> time = schema.add("time",
+			ScalarCodec.STRING, "morning");
+	static final Property<String> mode = schema.add("mode",
+			ScalarCodec.STRING, "");
+	static final Property<Integer> mana = schema.add("mana",
+			ScalarCodec.INTEGER, 10);
+	static final Property<String> locations = schema.add("locations",
+			ScalarCodec.STRING, "");
+	static final Property<String> mob = schema.add("mob", ScalarCodec.STRING,
+			"");
 }
\ No newline at end of file